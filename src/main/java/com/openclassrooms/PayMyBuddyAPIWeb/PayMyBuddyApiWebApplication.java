@@ -3,9 +3,11 @@ package com.openclassrooms.PayMyBuddyAPIWeb;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Slf4j
 @SpringBootApplication
+@EnableScheduling
 public class PayMyBuddyApiWebApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,39 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Utilisateur authentifié tel que conservé par Spring Security (dans la session HTTP).
+ * <p>
+ * En plus de l'email (identifiant de connexion), du mot de passe haché et des rôles,
+ * il porte l'identifiant de l'utilisateur : les services le lisent directement,
+ * sans requête sur l'email à chaque appel.
+ */
+public class AppUserPrincipal extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Identifiant de l'utilisateur (app_user.id) */
+    private final int userId;
+
+    public AppUserPrincipal(int userId, String email, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(email, password, authorities);
+        this.userId = userId;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    /**
+     * @return une nouvelle instance identique (le mot de passe d'une copie peut être effacé sans toucher à l'original)
+     */
+    public AppUserPrincipal copy() {
+        return new AppUserPrincipal(userId, getUsername(), getPassword(), getAuthorities());
+    }
+
+    // equals/hashCode hérités de User (basés sur l'email) : le registre des sessions reste cohérent
+}
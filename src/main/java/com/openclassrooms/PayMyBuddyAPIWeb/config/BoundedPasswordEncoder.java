@@ -0,0 +1,113 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {PasswordEncoder} qui exécute le hachage (BCrypt) dans un pool de threads dédié et borné.
+ * <p>
+ * Le hachage est volontairement coûteux en CPU. Exécuté directement sur les threads Tomcat, une rafale
+ * de connexions occupe tous les threads et tous les cœurs, et les autres pages (ex : /transfer) attendent.
+ * Ici, au plus {@code threads} hachages tournent en même temps (par défaut un par cœur) ; les demandes
+ * suivantes attendent dans une file bornée, et au-delà elles sont refusées immédiatement
+ * ({PasswordHashingBusyException}). Une demande qui attend plus de {@code await-timeout-ms} est aussi refusée.
+ * </p>
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long awaitTimeoutMs;
+
+    /**
+     * @param delegate       encodeur réel (BCrypt)
+     * @param threads        nombre de hachages simultanés
+     * @param queueCapacity  nombre de hachages en attente au plus
+     * @param awaitTimeoutMs attente maximale d'un hachage (file d'attente comprise), en ms
+     * @param meterRegistry  registre des métriques du pool
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long awaitTimeoutMs,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "paymybuddy.password.hashing", Tags.empty()).bindTo(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> T execute(Callable<T> hashing) {
+        Future<T> result;
+        try {
+            result = executor.submit(hashing);
+        } catch (RejectedExecutionException e) {
+            log.warn("Hachage de mot de passe refusé : {} en cours, {} en attente",
+                    executor.getActiveCount(), executor.getQueue().size());
+            throw busy();
+        }
+        try {
+            return result.get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            log.warn("Hachage de mot de passe abandonné après {} ms d'attente", awaitTimeoutMs);
+            throw busy();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static PasswordHashingBusyException busy() {
+        return new PasswordHashingBusyException("Service momentanément surchargé, veuillez réessayer dans quelques instants.");
+    }
+}
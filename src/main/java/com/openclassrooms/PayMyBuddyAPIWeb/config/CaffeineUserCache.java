@@ -0,0 +1,64 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Cache mémoire des utilisateurs chargés pour l'authentification ({UserCache} Spring Security), indexé par email.
+ * <p>
+ * Une connexion répétée sur le même compte (plusieurs onglets, reconnexions après expiration des sessions)
+ * ne relit pas l'utilisateur en base. Le cache est borné en taille (éviction LRU) et en durée ;
+ * {AppUserService#updateUser} en retire l'utilisateur modifié.
+ * </p>
+ * <p>
+ * Spring Security efface le mot de passe du principal après l'authentification : le cache ne renvoie
+ * donc jamais l'instance qu'il conserve, mais une copie.
+ * </p>
+ */
+@Component
+public class CaffeineUserCache implements UserCache {
+
+    private final Cache<String, AppUserPrincipal> users;
+
+    /**
+     * @param meterRegistry registre des métriques du cache
+     * @param maxSize       nombre maximal d'utilisateurs conservés
+     * @param ttlMs         durée de conservation d'un utilisateur après son chargement (ms)
+     */
+    public CaffeineUserCache(MeterRegistry meterRegistry,
+                             @Value("${paymybuddy.security.user-cache.size:10000}") long maxSize,
+                             @Value("${paymybuddy.security.user-cache.ttl-ms:300000}") long ttlMs) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, users, "paymybuddy.security.users");
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String email) {
+        AppUserPrincipal cached = users.getIfPresent(email);
+        return cached == null ? null : cached.copy();
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (user instanceof AppUserPrincipal principal && principal.getPassword() != null) {
+            users.put(principal.getUsername(), principal.copy());
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String email) {
+        users.invalidate(email);
+    }
+}
@@ -2,6 +2,8 @@ package com.openclassrooms.PayMyBuddyAPIWeb.config;
 
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -13,17 +15,23 @@ import org.springframework.stereotype.Service;
  * <p>
  * Cette implémentation utilise l'email comme identifiant unique.
  * Si la table AppUser ne contient pas de rôles, on attribue "USER" par défaut.
+ * L'utilisateur renvoyé ({AppUserPrincipal}) porte aussi son identifiant.
  */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
     private final AppUserRepository appUserRepository;
 
-    public CustomUserDetailsService(AppUserRepository appUserRepository) {
+    private final UserCache userCache;
+
+    public CustomUserDetailsService(AppUserRepository appUserRepository, UserCache userCache) {
         this.appUserRepository = appUserRepository;
+        this.userCache = userCache;
     }
 
     /**
      * Méthode appelée par Spring Security pour charger un utilisateur à partir de son email.
+     * <p>
+     * L'utilisateur est d'abord cherché dans le cache ({CaffeineUserCache}) ; sinon il est lu en base puis mis en cache.
      *
      * @param email l'adresse email de l'utilisateur
      * @return UserDetails utilisé par Spring Security
@@ -31,6 +39,11 @@ public class CustomUserDetailsService implements UserDetailsService {
      */
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        UserDetails cached = userCache.getUserFromCache(email);
+        if (cached != null) {
+            return cached;
+        }
+
         // Récupère l'utilisateur depuis la base
         AppUser user = appUserRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("Utilisateur non trouvé avec l'email: " + email));
@@ -39,12 +52,16 @@ public class CustomUserDetailsService implements UserDetailsService {
         // username -> email
         // password -> mot de passe haché
         // role -> "USER" par défaut
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getEmail()) // ce sera l’identifiant unique
-                .password(user.getPassword())  // le mot de passe déjà haché en BDD
-                .roles("USER") // Obligatoire pour Spring Security (sinon exception)
+        // userId -> identifiant conservé dans la session, pour éviter de rechercher l'utilisateur par email
+        AppUserPrincipal principal = new AppUserPrincipal(
+                user.getUserId(),
+                user.getEmail(), // ce sera l’identifiant unique
+                user.getPassword(), // le mot de passe déjà haché en BDD
+                // Obligatoire pour Spring Security (sinon exception)
                 // Même si notre table AppUser n'a pas de rôle, Spring Security exige au moins une authority.
                 // Ici, on attribue "USER" par défaut pour que l'utilisateur puisse s'authentifier
-                .build();
+                AuthorityUtils.createAuthorityList("ROLE_USER"));
+        userCache.putUserInCache(principal);
+        return principal;
     }
 }
@@ -0,0 +1,47 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.PooledTableIdGenerator;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Aligne les compteurs de la table {@code id_generator} sur les identifiants déjà présents en base.
+ * <p>
+ * Les lignes insérées hors Hibernate (scripts SQL, jeux de données de test, base existante avant
+ * le passage au générateur par table) utilisent l'AUTO_INCREMENT de MySQL : sans ce réalignement,
+ * le premier bloc réservé par Hibernate pourrait réutiliser leurs identifiants.
+ * Le compteur n'est jamais diminué (GREATEST) : un bloc déjà réservé par une autre instance reste valide.
+ * </p>
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class IdGeneratorInitializer {
+
+    /** Segment du générateur -> table dont il fournit les identifiants */
+    private static final Map<String, String> SEGMENTS = Map.of(
+            "app_user", "app_user",
+            "app_transaction", "app_transaction"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdGeneratorInitializer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void alignCounters() {
+        SEGMENTS.forEach((segment, table) -> {
+            jdbcTemplate.update("INSERT INTO " + PooledTableIdGenerator.TABLE_NAME + " (sequence_name, next_val) "
+                    + "SELECT ?, COALESCE(MAX(id), 0) FROM " + table + " "
+                    + "ON DUPLICATE KEY UPDATE next_val = GREATEST(COALESCE(next_val, 0), VALUES(next_val))", segment);
+            log.debug("Compteur d'identifiants '{}' aligné sur la table {}", segment, table);
+        });
+    }
+}
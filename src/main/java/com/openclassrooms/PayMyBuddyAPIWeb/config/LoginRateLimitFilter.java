@@ -0,0 +1,131 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Contrôle d'admission des tentatives de connexion (POST /login), avant toute vérification du mot de passe.
+ * <p>
+ * Chaque tentative consomme un jeton dans deux seaux ("token bucket") : celui de l'adresse IP et celui de l'email
+ * saisi. Un seau se remplit progressivement ({@code refill-per-minute}) jusqu'à sa capacité. Si l'un des deux
+ * est vide, la tentative est refusée sans accès à la base ni hachage BCrypt : une attaque par dictionnaire
+ * ou une rafale de connexions ne peut pas monopoliser le pool de hachage ({BoundedPasswordEncoder}).
+ * </p>
+ * <p>
+ * Les seaux inutilisés sont oubliés après 10 minutes ; leur nombre est borné.
+ * </p>
+ */
+@Slf4j
+@Component
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private final Cache<String, TokenBucket> buckets;
+
+    private final int ipCapacity;
+
+    private final double ipRefillPerNano;
+
+    private final int emailCapacity;
+
+    private final double emailRefillPerNano;
+
+    private final Counter rejected;
+
+    public LoginRateLimitFilter(MeterRegistry meterRegistry,
+                                @Value("${paymybuddy.security.login-limit.per-ip.capacity:20}") int ipCapacity,
+                                @Value("${paymybuddy.security.login-limit.per-ip.refill-per-minute:10}") int ipRefillPerMinute,
+                                @Value("${paymybuddy.security.login-limit.per-email.capacity:5}") int emailCapacity,
+                                @Value("${paymybuddy.security.login-limit.per-email.refill-per-minute:5}") int emailRefillPerMinute,
+                                @Value("${paymybuddy.security.login-limit.max-buckets:100000}") long maxBuckets) {
+        this.ipCapacity = ipCapacity;
+        this.ipRefillPerNano = ipRefillPerMinute / (double) Duration.ofMinutes(1).toNanos();
+        this.emailCapacity = emailCapacity;
+        this.emailRefillPerNano = emailRefillPerMinute / (double) Duration.ofMinutes(1).toNanos();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.rejected = Counter.builder("paymybuddy.security.login.rejected")
+                .description("Tentatives de connexion refusées par le contrôle d'admission").register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !("POST".equals(request.getMethod()) && "/login".equals(request.getServletPath()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long now = System.nanoTime();
+        String email = request.getParameter("username");
+        boolean ipAllowed = bucket("ip:" + request.getRemoteAddr(), ipCapacity, ipRefillPerNano, now).tryConsume(now);
+        boolean emailAllowed = email == null || email.isBlank()
+                || bucket("email:" + email.trim().toLowerCase(Locale.ROOT), emailCapacity, emailRefillPerNano, now).tryConsume(now);
+
+        if (!ipAllowed || !emailAllowed) {
+            rejected.increment();
+            log.warn("Tentative de connexion refusée (trop de tentatives) pour l'adresse {}", request.getRemoteAddr());
+            // même traitement qu'un échec de connexion : message en session et retour à la page de connexion
+            request.getSession().setAttribute("error", "Trop de tentatives de connexion. Réessayez dans quelques minutes.");
+            response.sendRedirect("/login");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private TokenBucket bucket(String key, int capacity, double refillPerNano, long now) {
+        return buckets.get(key, k -> new TokenBucket(capacity, refillPerNano, now));
+    }
+
+    /**
+     * Seau à jetons : {@code capacity} jetons au plus, rechargé de {@code refillPerNano} jeton par nanoseconde.
+     */
+    static final class TokenBucket {
+
+        private final int capacity;
+
+        private final double refillPerNano;
+
+        private double tokens;
+
+        private long lastRefill;
+
+        TokenBucket(int capacity, double refillPerNano, long now) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerNano;
+            this.tokens = capacity;
+            this.lastRefill = now;
+        }
+
+        /**
+         * Consomme un jeton s'il y en a un.
+         *
+         * @param now instant courant ({System#nanoTime})
+         * @return {@code true} si la tentative est admise
+         */
+        synchronized boolean tryConsume(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+    }
+}
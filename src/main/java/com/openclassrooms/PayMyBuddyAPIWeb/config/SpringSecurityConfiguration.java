@@ -1,11 +1,16 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.config;
 
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
  * Configuration de la sécurité de l'application PayMyBuddy.
@@ -15,7 +20,8 @@ import org.springframework.security.web.SecurityFilterChain;
  *   <li>Les règles d'accès aux URLs (pages publiques et protégées).</li>
  *   <li>La configuration du formulaire de login personnalisé avec gestion des échecs.</li>
  *   <li>La configuration du logout.</li>
- *   <li>Le bean PasswordEncoder pour encoder les mots de passe avec BCrypt.</li>
+ *   <li>Le bean PasswordEncoder pour encoder les mots de passe avec BCrypt, dans un pool de threads borné.</li>
+ *   <li>Le contrôle d'admission des tentatives de connexion ({LoginRateLimitFilter}).</li>
  * </ul>
  * <p>
  * URLs publiques : /register, /login, et les ressources statiques (/css/**, /js/**, /images/**).
@@ -27,14 +33,14 @@ import org.springframework.security.web.SecurityFilterChain;
 public class SpringSecurityConfiguration {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, LoginRateLimitFilter loginRateLimitFilter) throws Exception {
         // Configuration des règles de sécurité HTTP
         // Configuration du formulaire de login avec page custom et redirection après succès
         // Activation du logout (déconnexion)
         http
                 .authorizeHttpRequests(auth -> auth
                         // autorise
-                        .requestMatchers("/register", "/login").permitAll()
+                        .requestMatchers("/register", "/register/availability", "/login").permitAll()
                         .requestMatchers("/css/**", "/js/**", "/images/**").permitAll()
                         // toutes les autres requêtes nécessitent authentification
                         .anyRequest().authenticated()
@@ -44,8 +50,11 @@ public class SpringSecurityConfiguration {
                         .defaultSuccessUrl("/transfer", true) // redirection après succès
                         // Gestion personnalisée de l’échec de connexion :
                         // si les identifiants sont incorrects, on stocke un message d'erreur dans la session et on redirige vers /login
+                        // (ou, si le pool de hachage est saturé, un message demandant de réessayer)
                         .failureHandler((request, response, exception) -> {
-                            request.getSession().setAttribute("error", "Email et/ou mot de passe incorrect(s).");
+                            request.getSession().setAttribute("error", exception instanceof PasswordHashingBusyException
+                                    ? exception.getMessage()
+                                    : "Email et/ou mot de passe incorrect(s).");
                             response.sendRedirect("/login");
                         })
                         .permitAll()
@@ -53,16 +62,30 @@ public class SpringSecurityConfiguration {
                 .logout(logout -> logout
                         .logoutUrl("/logout")
                         .logoutSuccessUrl("/login?logout")
-                        .permitAll());
+                        .permitAll())
+                // Tentatives de connexion en excès refusées avant la recherche de l'utilisateur et le hachage
+                .addFilterBefore(loginRateLimitFilter, UsernamePasswordAuthenticationFilter.class);
 
 
 
         return http.build();
     }
 
-    // Bean pour encoder les mots de passe
+    // Le filtre ne s'exécute que dans la chaîne de sécurité (pas d'enregistrement automatique dans le conteneur)
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public FilterRegistrationBean<LoginRateLimitFilter> loginRateLimitFilterRegistration(LoginRateLimitFilter filter) {
+        FilterRegistrationBean<LoginRateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    // Bean pour encoder les mots de passe (BCrypt exécuté hors des threads Tomcat, dans un pool borné)
+    @Bean
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${paymybuddy.security.hashing.threads:0}") int threads,
+                                           @Value("${paymybuddy.security.hashing.queue-capacity:64}") int queueCapacity,
+                                           @Value("${paymybuddy.security.hashing.await-timeout-ms:5000}") long awaitTimeoutMs) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, queueCapacity, awaitTimeoutMs, meterRegistry);
     }
 }
\ No newline at end of file
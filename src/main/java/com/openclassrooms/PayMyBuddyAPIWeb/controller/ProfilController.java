@@ -3,6 +3,7 @@ package com.openclassrooms.PayMyBuddyAPIWeb.controller;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.AppUserDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.ProfilDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.EmailAlreadyUsedException;
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.PasswordHashingBusyException;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.UsernameAlreadyUsedException;
 import com.openclassrooms.PayMyBuddyAPIWeb.service.AppUserService;
 import jakarta.servlet.http.HttpServletRequest;
@@ -105,8 +106,7 @@ public class ProfilController {
         updatedUser.setUserId(userDTO.getUserId());
         updatedUser.setUserName(profilDTO.getUsername());
         updatedUser.setEmail(userDTO.getEmail()); // email reste inchangé
-        updatedUser.setPassword(passwordChanged ? profilDTO.getPassword() : userDTO.getPassword());
-        updatedUser.setBalance(userDTO.getBalance());
+        updatedUser.setPassword(passwordChanged ? profilDTO.getPassword() : null); // null = mot de passe conservé
 
         try {
             appUserService.updateUser(userDTO.getUserId(), updatedUser);
@@ -122,7 +122,7 @@ public class ProfilController {
             model.addAttribute("successMessage", "Profil mis à jour avec succès !");
             return "profil";
 
-        } catch (UsernameAlreadyUsedException | EmailAlreadyUsedException ex) {
+        } catch (UsernameAlreadyUsedException | EmailAlreadyUsedException | PasswordHashingBusyException ex) {
             model.addAttribute("errorMessage", ex.getMessage());
             return "profil";
         }
@@ -2,8 +2,10 @@ package com.openclassrooms.PayMyBuddyAPIWeb.controller;
 
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.RegisterDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.EmailAlreadyUsedException;
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.PasswordHashingBusyException;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.UsernameAlreadyUsedException;
 import com.openclassrooms.PayMyBuddyAPIWeb.service.AppUserService;
+import com.openclassrooms.PayMyBuddyAPIWeb.service.UserAvailabilityIndex;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,11 @@ import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Contrôleur Spring MVC responsable de la gestion des inscriptions utilisateurs.
@@ -27,6 +34,7 @@ import org.springframework.web.bind.annotation.PostMapping;
  *   <li>Gère les erreurs de validation standards et les cas particuliers
  *       où l'adresse email ou le nom d'utilisateur sont déjà utilisés.</li>
  *   <li>Redirige vers la page de connexion après une inscription réussie.</li>
+ *   <li>Indique pendant la saisie si le nom d'utilisateur et l'email sont libres (GET /register/availability).</li>
  * </ul>
  *
  * @author
@@ -38,6 +46,9 @@ public class RegisterController {
     @Autowired
     private AppUserService appUserService;
 
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
     // Méthode GET /register : afficher le formulaire d'inscription
     @GetMapping("/register")
     public String showRegisterForm(Model model) {
@@ -47,6 +58,28 @@ public class RegisterController {
     }
 
 
+    /**
+     * GET /register/availability : disponibilité d'un nom d'utilisateur et/ou d'un email, pour la saisie du formulaire.
+     * Réponse indicative : l'unicité est vérifiée à l'inscription.
+     *
+     * @param userName nom d'utilisateur souhaité (facultatif)
+     * @param email    email souhaité (facultatif)
+     * @return JSON {@code {"usernameAvailable": ..., "emailAvailable": ...}}, limité aux paramètres renseignés
+     */
+    @GetMapping("/register/availability")
+    @ResponseBody
+    public Map<String, Boolean> checkAvailability(@RequestParam(name = "username", required = false) String userName,
+                                                  @RequestParam(required = false) String email) {
+        Map<String, Boolean> availability = new LinkedHashMap<>();
+        if (userName != null && !userName.isBlank()) {
+            availability.put("usernameAvailable", userAvailabilityIndex.isUserNameAvailable(userName));
+        }
+        if (email != null && !email.isBlank()) {
+            availability.put("emailAvailable", userAvailabilityIndex.isEmailAvailable(email));
+        }
+        return availability;
+    }
+
     // Méthode POST /register : traitement de la soumission du formulaire d'inscription
     @PostMapping("/register")
     public String registerUser(@Valid RegisterDTO registerDTO,
@@ -80,6 +113,10 @@ public class RegisterController {
             ));
 
             return "register"; // renvoyer sur le formulaire avec message d'erreur
+        } catch (PasswordHashingBusyException e) {
+            log.warn("Inscription refusée : {}", e.getMessage());
+            model.addAttribute("error", e.getMessage());
+            return "register";
         }
 
         log.info("Utilisateur créé avec succès, redirection vers /login");
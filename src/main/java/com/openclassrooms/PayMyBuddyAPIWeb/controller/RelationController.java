@@ -1,6 +1,8 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.controller;
 
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.RelationDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.RelationImportResultDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.UserDirectoryEntryDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.UserNotFoundException;
 import com.openclassrooms.PayMyBuddyAPIWeb.service.AppUserService;
 import jakarta.validation.Valid;
@@ -11,8 +13,15 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
 /**
  * Contrôleur Spring MVC pour la gestion des relations utilisateur (ajout d'amis).
  * <p>
@@ -20,6 +29,9 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
  * <ul>
  *   <li> Afficher la page de création d'une nouvelle relation.</li>
  *   <li> Traiter l'ajout d'une relation via l'email de l'utilisateur cible.</li>
+ *   <li> Rechercher un utilisateur pendant la saisie (partie de nom ou d'email).</li>
+ *   <li> Suggérer des amis d'amis ("Vous connaissez peut-être") et les ajouter en un clic.</li>
+ *   <li> Importer une liste d'emails (saisie ou fichier texte) et afficher le résultat de chaque email.</li>
  *   <li> Gérer la validation du formulaire et les exceptions métier
  *       (utilisateur non trouvé, erreurs logiques, erreurs inattendues).</li>
  * </ul>
@@ -31,6 +43,12 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 @Controller
 public class RelationController {
 
+    /** Nombre de suggestions d'amis affichées */
+    public static final int SUGGESTIONS = 5;
+
+    /** Nombre maximal d'utilisateurs proposés pendant la saisie */
+    public static final int DIRECTORY_RESULTS = 10;
+
     private final AppUserService appUserService;
 
     public RelationController(AppUserService appUserService) {
@@ -42,6 +60,7 @@ public class RelationController {
      * <p>
      * Cette méthode initialise un RelationDTO si le modèle ne contient pas déjà un DTO existant.
      * Le DTO est utilisé par Thymeleaf pour remplir le formulaire.
+     * Les {SUGGESTIONS} meilleures suggestions d'amis sont ajoutées au modèle.
      *
      * @param model le modèle Spring MVC permettant de passer des attributs à la vue
      * @return le nom de la vue Thymeleaf {relation.html}
@@ -54,9 +73,43 @@ public class RelationController {
         if (!model.containsAttribute("relationDto")) {
             model.addAttribute("relationDto", new RelationDTO());
         }
+        model.addAttribute("suggestions", appUserService.getFriendSuggestionsForCurrentUser(SUGGESTIONS));
         return "relation";
     }
 
+    /**
+     * Recherche pendant la saisie : utilisateurs dont le nom ou l'email contient le texte saisi
+     * (au plus {DIRECTORY_RESULTS}, les plus pertinents en premier), pour compléter le champ email.
+     *
+     * @param q texte saisi (au moins 2 caractères, sinon la liste est vide)
+     * @return utilisateurs trouvés, en JSON
+     */
+    @GetMapping("/relation/users")
+    @ResponseBody
+    public List<UserDirectoryEntryDTO> searchUsers(@RequestParam(defaultValue = "") String q) {
+        return appUserService.searchDirectory(q, DIRECTORY_RESULTS);
+    }
+
+    /**
+     * Ajoute en ami un utilisateur suggéré (ami d'un ami).
+     *
+     * @param friendId           identifiant de l'utilisateur suggéré
+     * @param redirectAttributes permet de passer le message de succès ou d'erreur après redirection
+     * @return la redirection vers {/relation}
+     */
+    @PostMapping("/relation/suggestion")
+    public String addSuggestedRelation(@RequestParam int friendId, RedirectAttributes redirectAttributes) {
+        log.info("Ajout d'une relation suggérée : {}", friendId);
+        try {
+            appUserService.addSuggestedFriend(friendId);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("Erreur logique : {}", e.getMessage());
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            return "redirect:/relation";
+        }
+        return "redirect:/relation?success";
+    }
+
     /**
      * Traite la soumission du formulaire d'ajout d'une relation.
      * <p>
@@ -119,4 +172,39 @@ public class RelationController {
         // et permet de garder l'URL propre tout en affichant un message de succès
         return "redirect:/relation?success";
     }
+
+    /**
+     * Importe en relations une liste d'emails, collée dans le formulaire et/ou envoyée dans un fichier texte (CSV, TXT).
+     * <p>
+     * Le résultat de chaque email (ajouté, déjà ami, introuvable...) est affiché après redirection.
+     *
+     * @param emails             emails saisis, séparés par des espaces, retours à la ligne, virgules ou points-virgules
+     * @param file               fichier texte (UTF-8) contenant des emails, facultatif
+     * @param redirectAttributes permet de passer les résultats ou le message d'erreur après redirection
+     * @return la redirection vers {/relation}
+     */
+    @PostMapping("/relation/import")
+    public String importRelations(@RequestParam(required = false) String emails,
+                                  @RequestParam(required = false) MultipartFile file,
+                                  RedirectAttributes redirectAttributes) {
+        log.info("Import de relations en masse");
+        try {
+            String text = emails == null ? "" : emails;
+            if (file != null && !file.isEmpty()) {
+                text += "\n" + new String(file.getBytes(), StandardCharsets.UTF_8);
+            }
+            List<RelationImportResultDTO> results = appUserService.importFriendsByEmail(text);
+            long added = results.stream().filter(result -> result.getOutcome() == RelationImportResultDTO.Outcome.ADDED).count();
+            log.info("Import de relations : {} ajoutées sur {} emails", added, results.size());
+            redirectAttributes.addFlashAttribute("importResults", results);
+            redirectAttributes.addFlashAttribute("importAddedCount", added);
+        } catch (IllegalArgumentException e) {
+            log.warn("Import de relations refusé : {}", e.getMessage());
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        } catch (IOException e) {
+            log.error("Lecture du fichier importé impossible : {}", e.getMessage());
+            redirectAttributes.addFlashAttribute("errorMessage", "Le fichier n'a pas pu être lu !");
+        }
+        return "redirect:/relation";
+    }
 }
@@ -1,22 +1,33 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.controller;
 
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.BatchTransferFormDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferFormDTO;
-import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferHistoryDTO;
-import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferHistoryPageDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.FriendIdView;
 import com.openclassrooms.PayMyBuddyAPIWeb.service.AppTransactionService;
 import com.openclassrooms.PayMyBuddyAPIWeb.service.AppUserService;
+import com.openclassrooms.PayMyBuddyAPIWeb.service.HistoryExportFormat;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Contrôleur Spring MVC pour la gestion des transferts d'argent entre utilisateurs.
@@ -24,8 +35,11 @@ import java.util.List;
  * Cette classe permet de :
  * <ul>
  *   <li>Afficher la page de transfert d'argent avec un formulaire de saisie.</li>
- *   <li>Récupérer et afficher la liste des amis de l'utilisateur et l'historique des transactions.</li>
+ *   <li>Récupérer et afficher les contacts récents de l'utilisateur et l'historique des transactions.</li>
+ *   <li>Rechercher un ami par début de nom pendant la saisie du bénéficiaire (GET /transfer/friends, JSON).</li>
  *   <li>Traiter les transferts d'argent en gérant la validation, les erreurs métiers et les exceptions serveur.</li>
+ *   <li>Traiter les paiements groupés (plusieurs bénéficiaires en une seule opération).</li>
+ *   <li>Exporter l'historique complet des transactions (CSV ou JSON Lines).</li>
  * </ul>
  *
  * Les vues associées sont rendues via Thymeleaf (transfer.html).
@@ -34,6 +48,19 @@ import java.util.List;
 @Controller
 public class TransferController {
 
+    /** En-tête HTTP permettant au client (ou au proxy) de fournir sa propre clé d'idempotence */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /** Message affiché pour une clé d'idempotence d'en-tête trop longue */
+    private static final String IDEMPOTENCY_KEY_TOO_LONG = "La clé d'idempotence ne peut pas dépasser "
+            + TransferFormDTO.IDEMPOTENCY_KEY_MAX_LENGTH + " caractères.";
+
+    /** Nombre maximal de transactions par page d'historique */
+    public static final int MAX_PAGE_SIZE = 50;
+
+    /** Nombre d'amis proposés sur la page de transfert et par recherche : la page garde une taille constante */
+    public static final int FRIEND_SUGGESTIONS = 20;
+
     private final AppUserService appUserService;
 
     private final AppTransactionService appTransactionService;
@@ -49,50 +76,109 @@ public class TransferController {
      * Cette méthode prépare le modèle Spring MVC avec :
      * <ul>
      *   <li>Un TransferFormDTO vide pour le formulaire.</li>
-     *   <li>La liste des amis de l'utilisateur connecté.</li>
-     *   <li>L'historique paginé des transactions.</li>
-     *   <li>Les informations de pagination (page courante, nombre total de pages).</li>
+     *   <li>Les {FRIEND_SUGGESTIONS} contacts récents de l'utilisateur connecté (les autres sont trouvés par recherche).</li>
+     *   <li>L'historique paginé des transactions, lu par curseur (sans OFFSET).</li>
+     *   <li>Les informations de pagination (page courante, nombre total de pages, jetons des pages voisines).</li>
      * </ul>
+     * La taille de page est bornée à [1, MAX_PAGE_SIZE] et le numéro de page (affiché) au nombre de pages.
+     * Un curseur invalide renvoie sur la première page.
      *
-     * @param model le modèle Spring MVC permettant de passer des attributs à la vue
-     * @param page  le numéro de page pour la pagination des transactions (par défaut 0)
-     * @param size  le nombre de transactions par page (par défaut 5)
+     * @param model  le modèle Spring MVC permettant de passer des attributs à la vue
+     * @param page   le numéro de la page affichée (par défaut 0), utilisé pour l'affichage "Page x / y"
+     * @param size   le nombre de transactions par page (par défaut 5)
+     * @param cursor jeton opaque de la page à afficher (absent pour la première page)
      * @return le nom de la vue Thymeleaf {transfer.html}
      */
     @GetMapping("/transfer")
     public String showTransferPage(Model model,
                                    @RequestParam(defaultValue = "0") int page,
-                                   @RequestParam(defaultValue = "5") int size) { // size = nombre de transactions par page
+                                   @RequestParam(defaultValue = "5") int size, // size = nombre de transactions par page
+                                   @RequestParam(required = false) String cursor) {
 
         log.info("********** Obtenir la page de : TRANSFERT D'ARGENT **********");
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
         // 1. Ajoute le DTO vide pour le binding du formulaire
-        model.addAttribute("transferForm", new TransferFormDTO());
+        model.addAttribute("transferForm", newTransferForm());
+        model.addAttribute("batchTransferForm", newBatchTransferForm());
 
-        // 2. Récupère la liste des amis (username)
-        List<AppUser> friends = appUserService.getFriendsForCurrentUser();
+        // 2. Récupère les contacts récents (id, username), du plus récemment payé au plus ancien
+        List<FriendIdView> friends = appUserService.searchFriendsForCurrentUser(null, FRIEND_SUGGESTIONS);
         model.addAttribute("friends", friends);
 
-        // 3. Récupère l'historique des transactions
-        List<TransferHistoryDTO> transactions = appTransactionService.getTransactionHistoryForCurrentUser(page, size);
-        model.addAttribute("transactions", transactions);
+        // 3. Récupère la page de l'historique désignée par le curseur
+        TransferHistoryPageDTO historyPage;
+        try {
+            historyPage = appTransactionService.getTransactionHistoryPage(cursor, size);
+        } catch (IllegalArgumentException e) {
+            log.warn("Curseur d'historique invalide, retour à la première page");
+            historyPage = appTransactionService.getTransactionHistoryPage(null, size);
+            page = 0;
+        }
+        model.addAttribute("transactions", historyPage.getTransactions());
 
-        // 4. Récupération paginée des transactions
+        // 4. Informations de pagination
         int totalTransactions = appTransactionService.countTransactionsForCurrentUser();
         int totalPages = (int) Math.ceil((double) totalTransactions / size);
+        if (historyPage.getPreviousCursor() == null) {
+            page = 0;
+        }
+        page = Math.max(0, Math.min(page, totalPages - 1));
 
         model.addAttribute("currentPage", page);
         model.addAttribute("totalPages", totalPages);
         model.addAttribute("size", size);
+        model.addAttribute("nextCursor", historyPage.getNextCursor());
+        model.addAttribute("previousCursor", historyPage.getPreviousCursor());
 
         return "transfer"; // correspond à transfer.html dans /templates
     }
 
+    /**
+     * Recherche les amis de l'utilisateur connecté dont le nom commence par {@code q}, pour la saisie du bénéficiaire.
+     *
+     * @param q début du nom recherché (vide : contacts récents)
+     * @return JSON {@code [{"userId": ..., "userName": ...}]}, au plus {FRIEND_SUGGESTIONS} amis
+     */
+    @GetMapping("/transfer/friends")
+    @ResponseBody
+    public List<FriendIdView> searchFriends(@RequestParam(defaultValue = "") String q) {
+        return appUserService.searchFriendsForCurrentUser(q, FRIEND_SUGGESTIONS);
+    }
+
+    /**
+     * Exporte l'historique complet des transactions de l'utilisateur connecté, en téléchargement.
+     * <p>
+     * Le fichier est écrit en flux pendant la lecture de la base ; un format inconnu renvoie 400.
+     *
+     * @param format format du fichier : csv (par défaut) ou jsonl
+     * @return le fichier à télécharger
+     */
+    @GetMapping("/transfer/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(@RequestParam(defaultValue = "csv") String format) {
+        log.info("********** Export de l'historique des transactions ({}) **********", format);
+        HistoryExportFormat exportFormat;
+        try {
+            exportFormat = HistoryExportFormat.fromParameter(format);
+        } catch (IllegalArgumentException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("transactions." + exportFormat.getExtension()).build().toString())
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType() + ";charset=UTF-8"))
+                .body(appTransactionService.exportHistoryForCurrentUser(exportFormat));
+    }
+
     /**
      * Traite la soumission du formulaire de transfert d'argent.
      * <p>
      * Cette méthode :
      * <ul>
      *   <li>Valide les données du formulaire (TransferFormDTO).</li>
+     *   <li>Reprend la clé d'idempotence de l'en-tête Idempotency-Key s'il est présent (sinon celle du champ caché) :
+     *       un rejeu de la même requête n'est exécuté qu'une fois et renvoie le même résultat.
+     *       Une clé d'en-tête de plus de 64 caractères est refusée.</li>
      *   <li>Appelle le service AppUserService#processTransfer(TransferFormDTO) pour exécuter le transfert.</li>
      *   <li>Gère les erreurs de validation et les exceptions métiers (ex. solde insuffisant, relation invalide).</li>
      *   <li>Met à jour le modèle avec la liste des amis, l'historique des transactions et les informations de pagination.</li>
@@ -101,6 +187,7 @@ public class TransferController {
      *
      * @param transferForm       le DTO contenant les informations du transfert (destinataire, montant, etc.)
      * @param bindingResult      les résultats de la validation du formulaire
+     * @param idempotencyKey     clé d'idempotence transmise en en-tête (optionnelle)
      * @param model              le modèle Spring MVC pour transmettre des messages et données à la vue
      * @param redirectAttributes permet de passer des attributs (messages de succès) après redirection
      * @return le nom de la vue {transfer} ou une redirection vers {/transfer} après succès
@@ -109,21 +196,14 @@ public class TransferController {
     public String handleTransfer(
             @Valid @ModelAttribute("transferForm") TransferFormDTO transferForm,
             BindingResult bindingResult,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             Model model,
             RedirectAttributes redirectAttributes) {
 
         // Fonction utilitaire pour ajouter les attributs de pagination et amis
         Runnable populateModel = () -> {
-            List<AppUser> friends = appUserService.getFriendsForCurrentUser();
-            List<TransferHistoryDTO> transactions = appTransactionService.getTransactionHistoryForCurrentUser(0, 5);
-            int totalTransactions = appTransactionService.countTransactionsForCurrentUser();
-            int totalPages = (int) Math.ceil((double) totalTransactions / 5);
-
-            model.addAttribute("friends", friends);
-            model.addAttribute("transactions", transactions);
-            model.addAttribute("currentPage", 0); // page par défaut
-            model.addAttribute("totalPages", totalPages);
-            model.addAttribute("size", 5);
+            populateTransferModel(model);
+            model.addAttribute("batchTransferForm", newBatchTransferForm());
         };
 
         // si erreurs de validation côté champ
@@ -132,6 +212,16 @@ public class TransferController {
             return "transfer";
         }
 
+        // En-tête recopié après la validation du formulaire : sa longueur est vérifiée ici
+        if (StringUtils.hasText(idempotencyKey)) {
+            if (idempotencyKey.length() > TransferFormDTO.IDEMPOTENCY_KEY_MAX_LENGTH) {
+                populateModel.run();
+                model.addAttribute("errorMessage", IDEMPOTENCY_KEY_TOO_LONG);
+                return "transfer";
+            }
+            transferForm.setIdempotencyKey(idempotencyKey);
+        }
+
         try {
             appTransactionService.processTransfer(transferForm);
             redirectAttributes.addFlashAttribute("successMessage", "Transfert d'argent effectué avec succès.");
@@ -147,4 +237,101 @@ public class TransferController {
             return "transfer";
         }
     }
+
+    /**
+     * Traite la soumission du formulaire de paiement groupé.
+     * <p>
+     * Toutes les lignes sont exécutées dans une seule transaction (voir
+     * AppTransactionService#processBatchTransfer(BatchTransferFormDTO)) : en cas d'erreur,
+     * aucun transfert n'est effectué et la page est réaffichée avec les lignes saisies.
+     *
+     * @param batchTransferForm  le DTO contenant les lignes du paiement groupé
+     * @param bindingResult      les résultats de la validation du formulaire
+     * @param idempotencyKey     clé d'idempotence transmise en en-tête (optionnelle)
+     * @param model              le modèle Spring MVC pour transmettre des messages et données à la vue
+     * @param redirectAttributes permet de passer des attributs (messages de succès) après redirection
+     * @return le nom de la vue {transfer} ou une redirection vers {/transfer} après succès
+     */
+    @PostMapping("/transfer/batch")
+    public String handleBatchTransfer(
+            @Valid @ModelAttribute("batchTransferForm") BatchTransferFormDTO batchTransferForm,
+            BindingResult bindingResult,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            Model model,
+            RedirectAttributes redirectAttributes) {
+
+        Runnable populateModel = () -> {
+            populateTransferModel(model);
+            model.addAttribute("transferForm", newTransferForm());
+        };
+
+        if (bindingResult.hasErrors()) {
+            populateModel.run();
+            return "transfer";
+        }
+
+        if (StringUtils.hasText(idempotencyKey)) {
+            if (idempotencyKey.length() > TransferFormDTO.IDEMPOTENCY_KEY_MAX_LENGTH) {
+                populateModel.run();
+                model.addAttribute("errorMessage", IDEMPOTENCY_KEY_TOO_LONG);
+                return "transfer";
+            }
+            batchTransferForm.setIdempotencyKey(idempotencyKey);
+        }
+
+        try {
+            int count = appTransactionService.processBatchTransfer(batchTransferForm);
+            redirectAttributes.addFlashAttribute("successMessage", "Paiement groupé effectué avec succès (" + count + " transferts).");
+            return "redirect:/transfer";
+        } catch (IllegalArgumentException e) {
+            populateModel.run();
+            model.addAttribute("errorMessage", e.getMessage());
+            return "transfer";
+        } catch (Exception e) {
+            log.error("Échec du paiement groupé : {}", e.getMessage());
+            populateModel.run();
+            model.addAttribute("errorMessage", "Erreur serveur. Réessayez plus tard.");
+            return "transfer";
+        }
+    }
+
+    /**
+     * Ajoute au modèle les contacts récents et la première page de l'historique,
+     * pour réafficher la page de transfert après une erreur.
+     *
+     * @param model le modèle Spring MVC
+     */
+    private void populateTransferModel(Model model) {
+        List<FriendIdView> friends = appUserService.searchFriendsForCurrentUser(null, FRIEND_SUGGESTIONS);
+        TransferHistoryPageDTO historyPage = appTransactionService.getTransactionHistoryPage(null, 5);
+        int totalTransactions = appTransactionService.countTransactionsForCurrentUser();
+        int totalPages = (int) Math.ceil((double) totalTransactions / 5);
+
+        model.addAttribute("friends", friends);
+        model.addAttribute("transactions", historyPage.getTransactions());
+        model.addAttribute("currentPage", 0); // page par défaut
+        model.addAttribute("totalPages", totalPages);
+        model.addAttribute("size", 5);
+        model.addAttribute("nextCursor", historyPage.getNextCursor());
+        model.addAttribute("previousCursor", null);
+    }
+
+    /**
+     * @return un formulaire de transfert vide, avec une nouvelle clé d'idempotence
+     */
+    private TransferFormDTO newTransferForm() {
+        TransferFormDTO form = new TransferFormDTO();
+        form.setIdempotencyKey(UUID.randomUUID().toString());
+        return form;
+    }
+
+    /**
+     * @return un formulaire de paiement groupé vide, avec une première ligne à remplir et une nouvelle clé d'idempotence
+     */
+    private BatchTransferFormDTO newBatchTransferForm() {
+        BatchTransferFormDTO form = new BatchTransferFormDTO();
+        form.getLines().add(new TransferFormDTO());
+        form.setIdempotencyKey(UUID.randomUUID().toString());
+        return form;
+    }
 }
@@ -0,0 +1,33 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO pour le formulaire de paiement groupé (un expéditeur, plusieurs bénéficiaires).
+ * <p>
+ * Chaque ligne reprend les champs et les validations du transfert simple ({TransferFormDTO}).
+ */
+@Getter
+@Setter
+public class BatchTransferFormDTO {
+
+    /** Nombre maximal de lignes dans un paiement groupé */
+    public static final int MAX_LINES = 50;
+
+    /** Lignes du paiement groupé (au moins une, au plus MAX_LINES) */
+    @Valid
+    @NotEmpty(message = "Ajoutez au moins un bénéficiaire")
+    @Size(max = MAX_LINES, message = "Un paiement groupé est limité à " + MAX_LINES + " bénéficiaires")
+    private List<TransferFormDTO> lines = new ArrayList<>();
+
+    /** Clé d'idempotence (champ caché du formulaire ou en-tête Idempotency-Key) : un rejeu n'est pas exécuté deux fois */
+    @Size(max = TransferFormDTO.IDEMPOTENCY_KEY_MAX_LENGTH, message = "La clé d'idempotence ne peut pas dépasser 64 caractères")
+    private String idempotencyKey;
+}
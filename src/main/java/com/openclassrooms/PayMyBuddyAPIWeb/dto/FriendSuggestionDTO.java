@@ -0,0 +1,25 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO représentant une suggestion d'ami ("Vous connaissez peut-être").
+ * <p>
+ * Contient l'utilisateur suggéré et le nombre d'amis en commun.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class FriendSuggestionDTO {
+
+    /** Identifiant de l'utilisateur suggéré */
+    private int userId;
+
+    /** Nom de l'utilisateur suggéré */
+    private String userName;
+
+    /** Nombre d'amis en commun */
+    private int mutualFriends;
+}
@@ -0,0 +1,41 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO représentant le résultat de l'import d'une adresse email lors d'un ajout de relations en masse.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class RelationImportResultDTO {
+
+    /** Email importé, tel que saisi */
+    private String email;
+
+    /** Résultat de l'import pour cet email */
+    private Outcome outcome;
+
+    /**
+     * Résultat de l'import d'un email, avec son libellé affiché.
+     */
+    public enum Outcome {
+        ADDED("Ajouté"),
+        ALREADY_FRIEND("Déjà dans vos relations"),
+        SELF("Votre propre adresse"),
+        NOT_FOUND("Aucun utilisateur avec cet email"),
+        INVALID("Email invalide");
+
+        private final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+}
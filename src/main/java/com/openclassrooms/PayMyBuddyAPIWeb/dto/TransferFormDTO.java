@@ -15,6 +15,9 @@ import java.math.BigDecimal;
 @Setter
 public class TransferFormDTO {
 
+    /** Longueur maximale d'une clé d'idempotence (colonne transfer_idempotency.idempotency_key) */
+    public static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+
     /** Nom d'utilisateur du bénéficiaire (obligatoire) */
     @NotBlank(message = "La relation (bénéficiaire) est obligatoire")
     private String relation; // username du friend choisi
@@ -29,4 +32,8 @@ public class TransferFormDTO {
     @DecimalMin(value = "0.01", message = "Le montant doit être supérieur à 0")
     @Digits(integer = 10, fraction = 2, message = "Le montant doit avoir au maximum 2 décimales")
     private BigDecimal montant;
+
+    /** Clé d'idempotence (champ caché du formulaire ou en-tête Idempotency-Key) : un rejeu n'est pas exécuté deux fois */
+    @Size(max = IDEMPOTENCY_KEY_MAX_LENGTH, message = "La clé d'idempotence ne peut pas dépasser 64 caractères")
+    private String idempotencyKey;
 }
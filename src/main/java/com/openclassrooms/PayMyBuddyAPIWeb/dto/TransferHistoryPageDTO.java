@@ -0,0 +1,26 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Page de l'historique des transactions, obtenue par pagination par curseur.
+ * <p>
+ * Contient les transactions de la page et les jetons opaques permettant de charger
+ * la page suivante (plus ancienne) ou précédente (plus récente).
+ */
+@Getter
+@AllArgsConstructor
+public class TransferHistoryPageDTO {
+
+    /** Transactions de la page, de la plus récente à la plus ancienne */
+    private List<TransferHistoryDTO> transactions;
+
+    /** Jeton de la page suivante, ou null s'il n'y a pas de transaction plus ancienne */
+    private String nextCursor;
+
+    /** Jeton de la page précédente, ou null sur la première page */
+    private String previousCursor;
+}
@@ -0,0 +1,23 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * DTO représentant un utilisateur trouvé dans l'annuaire (recherche pendant la saisie sur la page relation).
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+public class UserDirectoryEntryDTO {
+
+    /** Identifiant de l'utilisateur */
+    private int userId;
+
+    /** Nom de l'utilisateur */
+    private String userName;
+
+    /** Email de l'utilisateur, utilisé pour l'ajout de la relation */
+    private String email;
+}
@@ -16,12 +16,16 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
-@Table(name = "app_transaction")
+@Table(name = "app_transaction", indexes = {
+        // Index composites de l'historique : pagination par curseur (created_at, id) pour chaque côté du transfert
+        @Index(name = "idx_transaction_sender_created", columnList = "user_id_sender, created_at, id"),
+        @Index(name = "idx_transaction_receiver_created", columnList = "user_id_receiver, created_at, id")
+})
 public class AppTransaction {
 
     /** Identifiant unique de la transaction */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledTableId("app_transaction")
     @Column(name = "id")
     private int transactionId;
 
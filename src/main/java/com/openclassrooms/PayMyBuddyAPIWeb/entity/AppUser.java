@@ -3,7 +3,9 @@ package com.openclassrooms.PayMyBuddyAPIWeb.entity;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -17,23 +19,35 @@ import java.util.Set;
  * ainsi que ses amis et ses transactions envoyées/reçues.
  */
 @Entity
-@Table(name = "app_user")
+@Table(name = "app_user", uniqueConstraints = {
+        // Noms identiques au schéma SQL : AppUserService s'en sert pour identifier le champ en doublon
+        @UniqueConstraint(name = AppUser.USERNAME_UNIQUE, columnNames = "username"),
+        @UniqueConstraint(name = AppUser.EMAIL_UNIQUE, columnNames = "email")
+})
+// UPDATE limité aux colonnes modifiées (ex : changement de nom sans toucher au mot de passe ni au solde)
+@DynamicUpdate
 @Setter
 @Getter
 public class AppUser {
 
+    /** Nom de la contrainte d'unicité du nom d'utilisateur */
+    public static final String USERNAME_UNIQUE = "username_UNIQUE";
+
+    /** Nom de la contrainte d'unicité de l'email */
+    public static final String EMAIL_UNIQUE = "email_UNIQUE";
+
     /** Identifiant unique de l'utilisateur */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledTableId("app_user")
     @Column(name = "id")
     private int userId;
 
     /** Nom d'utilisateur (unique, obligatoire, max 50 caractères) */
-    @Column(name = "username", nullable = false, unique = true, length = 50)
+    @Column(name = "username", nullable = false, length = 50)
     private String userName;
 
     /** Email de l'utilisateur (unique, obligatoire, max 100 caractères) */
-    @Column(nullable = false, unique = true, length = 100)
+    @Column(nullable = false, length = 100)
     private String email;
 
     /** Mot de passe de l'utilisateur (obligatoire, max 100 caractères) */
@@ -50,6 +64,14 @@ public class AppUser {
     @CreationTimestamp
     private LocalDateTime userCreatedAt;
 
+    /**
+     * Nombre de transactions (envoyées + reçues) de l'utilisateur, tenu à jour en SQL par les transferts
+     * (voir TransferJdbcRepository) : jamais écrit par Hibernate, pour ne pas écraser un incrément concurrent.
+     */
+    @Column(name = "tx_count", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private int transactionCount;
+
     /** Ensemble des amis de l'utilisateur */
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
@@ -0,0 +1,28 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Génération d'identifiant par table (id_generator) avec allocation par blocs.
+ * <p>
+ * Contrairement à {@code GenerationType.IDENTITY}, l'identifiant est connu avant l'INSERT :
+ * Hibernate peut alors regrouper les insertions en lots JDBC ({@code hibernate.jdbc.batch_size}).
+ * La taille des blocs est configurable via {@code spring.jpa.properties.paymybuddy.id.allocation-size}.
+ *
+ * @see PooledTableIdGenerator
+ */
+@IdGeneratorType(PooledTableIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PooledTableId {
+
+    /**
+     * @return nom du segment (ligne de la table id_generator), en général le nom de la table de l'entité
+     */
+    String value();
+}
@@ -0,0 +1,54 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.entity;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Générateur d'identifiants par table, utilisé via l'annotation {@link PooledTableId}.
+ * <p>
+ * MySQL ne proposant pas de séquences, les identifiants sont réservés par blocs dans la table
+ * {@code id_generator} (une ligne par segment) avec l'optimiseur "pooled-lo" :
+ * la valeur stockée est le dernier identifiant réservé, le bloc suivant commence juste après.
+ * La réservation se fait dans une transaction séparée, donc sans garder de verrou sur id_generator.
+ * </p>
+ */
+public class PooledTableIdGenerator extends TableGenerator {
+
+    /** Nom de la table des compteurs */
+    public static final String TABLE_NAME = "id_generator";
+
+    /** Paramètre Hibernate (spring.jpa.properties.*) donnant la taille des blocs */
+    public static final String ALLOCATION_SIZE_SETTING = "paymybuddy.id.allocation-size";
+
+    /** Taille des blocs si le paramètre n'est pas renseigné */
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    private final String segment;
+
+    /**
+     * Constructeur appelé par Hibernate avec l'annotation portée par l'identifiant.
+     *
+     * @param config annotation {@link PooledTableId} de l'entité
+     */
+    public PooledTableIdGenerator(PooledTableId config) {
+        this.segment = config.value();
+    }
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        Object allocationSize = serviceRegistry.requireService(ConfigurationService.class)
+                .getSettings().get(ALLOCATION_SIZE_SETTING);
+        params.setProperty(TABLE_PARAM, TABLE_NAME);
+        params.setProperty(SEGMENT_VALUE_PARAM, segment);
+        params.setProperty(INITIAL_PARAM, "0");
+        params.setProperty(INCREMENT_PARAM, allocationSize == null
+                ? String.valueOf(DEFAULT_ALLOCATION_SIZE)
+                : allocationSize.toString());
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,16 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.exception;
+
+/**
+ * Exception levée lorsque le verrou mémoire d'un compte n'a pas pu être obtenu
+ * dans le délai imparti (trop de transferts simultanés sur les mêmes comptes).
+ */
+public class AccountLockTimeoutException extends RuntimeException {
+    /**
+     * Constructeur avec message d'erreur.
+     *
+     * @param message message décrivant l'erreur
+     */
+    public AccountLockTimeoutException(String message) {
+        super(message);
+    }
+}
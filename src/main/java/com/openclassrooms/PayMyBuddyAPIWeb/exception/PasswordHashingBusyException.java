@@ -0,0 +1,21 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.exception;
+
+import org.springframework.security.authentication.AuthenticationServiceException;
+
+/**
+ * Exception levée lorsque le hachage d'un mot de passe est refusé faute de capacité
+ * (file d'attente du pool de hachage pleine, ou attente trop longue).
+ * <p>
+ * Sous-classe d'{AuthenticationServiceException} : pendant une connexion, Spring Security la traite
+ * comme un échec d'authentification (redirection vers la page de connexion) et non comme une erreur serveur.
+ */
+public class PasswordHashingBusyException extends AuthenticationServiceException {
+    /**
+     * Constructeur avec message d'erreur.
+     *
+     * @param message message décrivant l'erreur
+     */
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
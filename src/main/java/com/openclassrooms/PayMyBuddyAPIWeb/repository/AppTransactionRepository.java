@@ -1,26 +1,29 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.repository;
 
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
-import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.TransferHistoryRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * Repository Spring Data JPA pour l'entité {AppTransaction}.
  * <p>
  * Fournit des méthodes pour accéder aux transactions dans la base de données,
  * incluant les transactions envoyées et reçues par un utilisateur.
- * Utilise la pagination pour récupérer les résultats par pages.
+ * L'historique est lu par curseur (created_at, id), sans OFFSET.
  * </p>
  *
  * <p>Méthodes principales :</p>
  * <ul>
- *     <li> #findBySenderOrReceiverOrderByTransactionCreatedAtDesc (AppUser, AppUser, Pageable) : récupère toutes les transactions
- *         envoyées ou reçues par un utilisateur, avec pagination, triées de la plus récente à la plus ancienne.</li>
- *     <li> #countBySenderOrReceiver (AppUser, AppUser) : compte le nombre total de transactions
- *         pour un utilisateur (utile pour le calcul du nombre de pages).</li>
+ *     <li> #findLatestHistory, #findOlderHistory, #findNewerHistory : pagination par curseur (created_at, id),
+ *         sans OFFSET, par UNION ALL des transactions envoyées et reçues, en projection {TransferHistoryRow}.</li>
+ *     <li> #findSentHistoryAfter, #findReceivedHistoryAfter : un seul côté de l'historique, dans l'ordre de son index,
+ *         lu par pages pour l'export (CSV, JSON Lines) ; les deux côtés sont fusionnés en Java.</li>
  * </ul>
  *
  * <p>Hérite de JpaRepository, fournissant des méthodes CRUD standard.</p>
@@ -28,29 +31,137 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface AppTransactionRepository extends JpaRepository<AppTransaction, Integer> {
 
+    /*
+     * Requêtes natives de l'historique : au lieu de "user_id_sender = ? OR user_id_receiver = ?"
+     * (que MySQL résout souvent par un parcours complet ou un index merge suivi d'un tri de tout l'historique),
+     * chaque côté est lu dans l'ordre de son index composite (user_id_xxx, created_at, id) et limité à :maxRows lignes,
+     * puis les deux résultats sont fusionnés par UNION ALL. Seules 2 x :maxRows lignes au plus sont triées.
+     * Les deux côtés sont disjoints (un utilisateur ne peut pas se payer lui-même).
+     *
+     * Chaque côté fournit directement l'identifiant de la contrepartie et le montant signé (négatif si envoyé) ;
+     * une seule jointure sur app_user ajoute le nom d'utilisateur. Aucune entité n'est chargée.
+     */
+
+    /** Colonnes de la projection {TransferHistoryRow}, calculées sur la fusion h des deux côtés */
+    String HISTORY_ROW_SELECT = "SELECT h.id AS id, h.created_at AS createdAt, u.username AS relation, "
+            + "h.description AS description, h.montant AS montant FROM (";
+
+    /** Transactions envoyées : contrepartie = destinataire, montant négatif */
+    String HISTORY_SENT = "(SELECT id, created_at, user_id_receiver AS counterparty_id, description, -amount AS montant "
+            + "FROM app_transaction WHERE user_id_sender = :userId ";
+
+    /** Transactions reçues : contrepartie = expéditeur, montant positif */
+    String HISTORY_RECEIVED = "(SELECT id, created_at, user_id_sender AS counterparty_id, description, amount AS montant "
+            + "FROM app_transaction WHERE user_id_receiver = :userId ";
+
+    String HISTORY_OLDER_THAN = "AND (created_at < :createdAt OR (created_at = :createdAt AND id < :id)) ";
+
+    String HISTORY_NEWER_THAN = "AND (created_at > :createdAt OR (created_at = :createdAt AND id > :id)) ";
+
+    String HISTORY_SIDE_DESC = "ORDER BY created_at DESC, id DESC LIMIT :maxRows)";
+
+    String HISTORY_SIDE_ASC = "ORDER BY created_at ASC, id ASC LIMIT :maxRows)";
+
+    String HISTORY_MERGE_DESC = ") h JOIN app_user u ON u.id = h.counterparty_id "
+            + "ORDER BY h.created_at DESC, h.id DESC LIMIT :maxRows";
+
+    String HISTORY_MERGE_ASC = ") h JOIN app_user u ON u.id = h.counterparty_id "
+            + "ORDER BY h.created_at ASC, h.id ASC LIMIT :maxRows";
+
+    /** Première page de l'historique (constante partagée avec le test EXPLAIN) */
+    String LATEST_HISTORY_SQL = HISTORY_ROW_SELECT
+            + HISTORY_SENT + HISTORY_SIDE_DESC + " UNION ALL " + HISTORY_RECEIVED + HISTORY_SIDE_DESC
+            + HISTORY_MERGE_DESC;
+
+    /** Transactions plus anciennes que (:createdAt, :id) */
+    String OLDER_HISTORY_SQL = HISTORY_ROW_SELECT
+            + HISTORY_SENT + HISTORY_OLDER_THAN + HISTORY_SIDE_DESC
+            + " UNION ALL " + HISTORY_RECEIVED + HISTORY_OLDER_THAN + HISTORY_SIDE_DESC
+            + HISTORY_MERGE_DESC;
+
+    /** Transactions plus récentes que (:createdAt, :id), dans l'ordre chronologique */
+    String NEWER_HISTORY_SQL = HISTORY_ROW_SELECT
+            + HISTORY_SENT + HISTORY_NEWER_THAN + HISTORY_SIDE_ASC
+            + " UNION ALL " + HISTORY_RECEIVED + HISTORY_NEWER_THAN + HISTORY_SIDE_ASC
+            + HISTORY_MERGE_ASC;
+
+    /*
+     * Export de l'historique complet : trier la fusion des deux côtés obligerait MySQL à matérialiser
+     * puis trier tout l'historique de l'utilisateur. Chaque côté est donc lu séparément, par pages de :maxRows
+     * lignes dans l'ordre de son index (seule la page est triée après la jointure), et la fusion se fait en Java.
+     */
+
+    /** Page suivante des transactions envoyées après (:createdAt, :id), dans l'ordre chronologique (export) */
+    String SENT_HISTORY_AFTER_SQL = HISTORY_ROW_SELECT
+            + HISTORY_SENT + HISTORY_NEWER_THAN + HISTORY_SIDE_ASC
+            + HISTORY_MERGE_ASC;
+
+    /** Page suivante des transactions reçues après (:createdAt, :id), dans l'ordre chronologique (export) */
+    String RECEIVED_HISTORY_AFTER_SQL = HISTORY_ROW_SELECT
+            + HISTORY_RECEIVED + HISTORY_NEWER_THAN + HISTORY_SIDE_ASC
+            + HISTORY_MERGE_ASC;
+
+    /**
+     * Première page de l'historique d'un utilisateur (transactions envoyées ou reçues),
+     * de la plus récente à la plus ancienne.
+     *
+     * @param userId identifiant de l'utilisateur
+     * @param limit  nombre de lignes à lire
+     * @return les transactions les plus récentes
+     */
+    @Query(value = LATEST_HISTORY_SQL, nativeQuery = true)
+    List<TransferHistoryRow> findLatestHistory(@Param("userId") int userId, @Param("maxRows") int limit);
+
     /**
-     * Récupère toutes les transactions telles que l'utilisateur est soit l'expéditeur,
-     * soit le destinataire, avec pagination, triées par date de création décroissante.
-     * <p>
-     *  Les transactions les plus récentes apparaissent en premier.
+     * Transactions strictement plus anciennes que la position (createdAt, id), de la plus récente à la plus ancienne.
      *
-     * @param sender   l'utilisateur expéditeur
-     * @param receiver l'utilisateur destinataire
-     * @param pageable objet de pagination (page, taille, tri)
-     * @return une page de AppTransaction correspondant à l'utilisateur,
-     *           triée par date de création décroissante
+     * @param userId    identifiant de l'utilisateur
+     * @param createdAt date de création de la dernière transaction affichée
+     * @param id        identifiant de la dernière transaction affichée
+     * @param limit     nombre de lignes à lire
+     * @return la page suivante de l'historique
      */
-    Page<AppTransaction> findBySenderOrReceiverOrderByTransactionCreatedAtDesc(AppUser sender, AppUser receiver, Pageable pageable);
+    @Query(value = OLDER_HISTORY_SQL, nativeQuery = true)
+    List<TransferHistoryRow> findOlderHistory(@Param("userId") int userId, @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") int id, @Param("maxRows") int limit);
 
+    /**
+     * Transactions strictement plus récentes que la position (createdAt, id), de la plus ancienne à la plus récente
+     * (à inverser pour l'affichage).
+     *
+     * @param userId    identifiant de l'utilisateur
+     * @param createdAt date de création de la première transaction affichée
+     * @param id        identifiant de la première transaction affichée
+     * @param limit     nombre de lignes à lire
+     * @return la page précédente de l'historique, dans l'ordre chronologique
+     */
+    @Query(value = NEWER_HISTORY_SQL, nativeQuery = true)
+    List<TransferHistoryRow> findNewerHistory(@Param("userId") int userId, @Param("createdAt") LocalDateTime createdAt,
+                                          @Param("id") int id, @Param("maxRows") int limit);
+
+    /**
+     * Transactions envoyées strictement après la position (createdAt, id), de la plus ancienne à la plus récente.
+     *
+     * @param userId    identifiant de l'expéditeur
+     * @param createdAt date de création de la dernière transaction envoyée déjà lue
+     * @param id        identifiant de la dernière transaction envoyée déjà lue
+     * @param limit     nombre de lignes à lire
+     * @return la page suivante des transactions envoyées (montant négatif)
+     */
+    @Query(value = SENT_HISTORY_AFTER_SQL, nativeQuery = true)
+    List<TransferHistoryRow> findSentHistoryAfter(@Param("userId") int userId, @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") int id, @Param("maxRows") int limit);
 
     /**
-     * Compte le nombre total de transactions où l'utilisateur est soit l'expéditeur,
-     * soit le destinataire.
+     * Transactions reçues strictement après la position (createdAt, id), de la plus ancienne à la plus récente.
      *
-     * @param sender   l'utilisateur expéditeur
-     * @param receiver l'utilisateur destinataire
-     * @return le nombre total de transactions pour l'utilisateur
+     * @param userId    identifiant du destinataire
+     * @param createdAt date de création de la dernière transaction reçue déjà lue
+     * @param id        identifiant de la dernière transaction reçue déjà lue
+     * @param limit     nombre de lignes à lire
+     * @return la page suivante des transactions reçues (montant positif)
      */
-    int countBySenderOrReceiver(AppUser sender, AppUser receiver);
-    // Cette méthode est utile pour connaître le nombre de pages
+    @Query(value = RECEIVED_HISTORY_AFTER_SQL, nativeQuery = true)
+    List<TransferHistoryRow> findReceivedHistoryAfter(@Param("userId") int userId, @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") int id, @Param("maxRows") int limit);
 }
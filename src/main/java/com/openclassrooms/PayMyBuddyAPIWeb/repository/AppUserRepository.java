@@ -1,11 +1,18 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.repository;
 
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.FriendIdView;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.UserEmailView;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -20,6 +27,16 @@ import java.util.Optional;
  * <ul>
  *     <li> #findByEmail(String) : recherche un utilisateur par son email.</li>
  *     <li> #findByUserName(String) : recherche un utilisateur par son nom d'utilisateur.</li>
+ *     <li> #existsByEmail(String), #existsByUserName(String) : vérifient l'existence sans charger l'entité.</li>
+ *     <li> #findUserIdByEmail(String) : récupère uniquement l'identifiant d'un utilisateur.</li>
+ *     <li> #findUserIdsByEmails(Collection) : récupère en une requête l'identifiant de plusieurs utilisateurs.</li>
+ *     <li> #findFriendIdByUserName(int, String) : récupère l'identifiant d'un ami à partir de son nom d'utilisateur.</li>
+ *     <li> #findFriendIdsByUserNames(int, Collection) : récupère en une requête les identifiants de plusieurs amis.</li>
+ *     <li> #findFriendsByUserNamePrefix(int, String, Limit) : recherche des amis par début de nom, en nombre borné.</li>
+ *     <li> #findRecentFriends(int, int) : premiers amis, du plus récemment payé au plus ancien.</li>
+ *     <li> #findUserNamesByIds(Collection) : récupère identifiant et nom de plusieurs utilisateurs.</li>
+ *     <li> #findTransactionCountById(int) : lit le compteur de transactions d'un utilisateur.</li>
+ *     <li> #findAllByIdsForUpdate(Collection) : verrouille des utilisateurs dans l'ordre croissant de leur identifiant.</li>
  * </ul>
  */
 @Repository
@@ -41,6 +58,22 @@ public interface AppUserRepository extends JpaRepository<AppUser, Integer> {
      */
     Optional<AppUser> findByUserName(String userName);
 
+    /**
+     * Indique si un utilisateur utilise déjà cet email (sans charger l'entité).
+     *
+     * @param email l'adresse email recherchée
+     * @return {@code true} si l'email est déjà utilisé
+     */
+    boolean existsByEmail(String email);
+
+    /**
+     * Indique si un utilisateur utilise déjà ce nom d'utilisateur (sans charger l'entité).
+     *
+     * @param userName le nom d'utilisateur recherché
+     * @return {@code true} si le nom est déjà utilisé
+     */
+    boolean existsByUserName(String userName);
+
     /**
      * Recherche un utilisateur par son adresse email et charge simultanément sa liste d'amis.
      * <p>
@@ -53,4 +86,120 @@ public interface AppUserRepository extends JpaRepository<AppUser, Integer> {
      */
     @Query("SELECT u FROM AppUser u LEFT JOIN FETCH u.friends WHERE u.email = :email")
     Optional<AppUser> findByEmailWithFriends(@Param("email") String email);
+
+    /**
+     * Récupère uniquement l'identifiant d'un utilisateur à partir de son email,
+     * sans charger l'entité complète.
+     *
+     * @param email l'email de l'utilisateur
+     * @return un Optional contenant l'identifiant si trouvé, sinon vide
+     */
+    @Query("SELECT u.userId FROM AppUser u WHERE u.email = :email")
+    Optional<Integer> findUserIdByEmail(@Param("email") String email);
+
+    /**
+     * Récupère en une seule requête l'identifiant de plusieurs utilisateurs à partir de leur email.
+     * Les emails inconnus sont ignorés ; la comparaison suit la collation de la colonne (insensible à la casse).
+     *
+     * @param emails emails recherchés
+     * @return identifiant et email (tel qu'enregistré) de chaque utilisateur trouvé
+     */
+    @Query("SELECT u.userId AS userId, u.email AS email FROM AppUser u WHERE u.email IN :emails")
+    List<UserEmailView> findUserIdsByEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * Récupère l'identifiant d'un ami de l'utilisateur à partir de son nom d'utilisateur.
+     * <p>
+     * Une seule jointure sur la table user_friendship : le résultat est vide si le nom d'utilisateur
+     * n'existe pas ou s'il ne fait pas partie des amis de l'utilisateur.
+     * </p>
+     *
+     * @param userId   identifiant de l'utilisateur propriétaire de la liste d'amis
+     * @param userName nom d'utilisateur de l'ami recherché
+     * @return un Optional contenant l'identifiant de l'ami si trouvé, sinon vide
+     */
+    @Query("SELECT f.userId FROM AppUser u JOIN u.friends f WHERE u.userId = :userId AND f.userName = :userName")
+    Optional<Integer> findFriendIdByUserName(@Param("userId") int userId, @Param("userName") String userName);
+
+    /**
+     * Lit le nombre de transactions (envoyées + reçues) d'un utilisateur, tenu à jour par les transferts.
+     *
+     * @param userId identifiant de l'utilisateur
+     * @return un Optional contenant le compteur si l'utilisateur existe, sinon vide
+     */
+    @Query("SELECT u.transactionCount FROM AppUser u WHERE u.userId = :userId")
+    Optional<Integer> findTransactionCountById(@Param("userId") int userId);
+
+    /**
+     * Récupère en une seule requête les identifiants de plusieurs amis de l'utilisateur.
+     * <p>
+     * Les noms d'utilisateur inconnus ou absents de la liste d'amis sont simplement ignorés :
+     * c'est à l'appelant de comparer le résultat aux noms demandés.
+     * </p>
+     *
+     * @param userId    identifiant de l'utilisateur propriétaire de la liste d'amis
+     * @param userNames noms d'utilisateur des amis recherchés
+     * @return identifiant et nom d'utilisateur de chaque ami trouvé
+     */
+    @Query("SELECT f.userId AS userId, f.userName AS userName FROM AppUser u JOIN u.friends f "
+            + "WHERE u.userId = :userId AND f.userName IN :userNames")
+    List<FriendIdView> findFriendIdsByUserNames(@Param("userId") int userId, @Param("userNames") Collection<String> userNames);
+
+    /**
+     * Recherche les amis de l'utilisateur dont le nom commence par un préfixe, par ordre alphabétique.
+     * <p>
+     * Seuls l'identifiant et le nom sont lus, et le nombre de résultats est borné : la taille du résultat
+     * ne dépend pas du nombre d'amis. La comparaison suit la collation de la colonne (insensible à la casse).
+     * </p>
+     *
+     * @param userId identifiant de l'utilisateur propriétaire de la liste d'amis
+     * @param prefix motif LIKE échappé par {@code !}, terminé par {@code %} ({@code %} seul pour tous les amis)
+     * @param limit  nombre maximal de résultats
+     * @return identifiant et nom d'utilisateur des amis trouvés
+     */
+    @Query("SELECT f.userId AS userId, f.userName AS userName FROM AppUser u JOIN u.friends f "
+            + "WHERE u.userId = :userId AND f.userName LIKE :prefix ESCAPE '!' ORDER BY f.userName")
+    List<FriendIdView> findFriendsByUserNamePrefix(@Param("userId") int userId, @Param("prefix") String prefix, Limit limit);
+
+    /**
+     * Récupère les amis de l'utilisateur, du plus récemment payé au plus ancien, puis ceux jamais payés.
+     * <p>
+     * Lecture de l'index (user_id, last_transfer_at DESC) de user_friendship arrêtée après {@code limit} entrées,
+     * puis du nom de ces seuls amis par clé primaire : le coût ne dépend pas du nombre d'amis.
+     * </p>
+     *
+     * @param userId identifiant de l'utilisateur propriétaire de la liste d'amis
+     * @param limit  nombre maximal de résultats
+     * @return identifiant et nom d'utilisateur des amis, du plus récemment payé au plus ancien
+     */
+    @Query(value = "SELECT uf.friend_id AS userId, u.username AS userName FROM user_friendship uf "
+            + "JOIN app_user u ON u.id = uf.friend_id "
+            + "WHERE uf.user_id = :userId ORDER BY uf.last_transfer_at DESC LIMIT :limit", nativeQuery = true)
+    List<FriendIdView> findRecentFriends(@Param("userId") int userId, @Param("limit") int limit);
+
+    /**
+     * Récupère en une seule requête l'identifiant et le nom de plusieurs utilisateurs, sans charger les entités.
+     * Les identifiants inconnus sont ignorés.
+     *
+     * @param ids identifiants des utilisateurs
+     * @return identifiant et nom d'utilisateur de chaque utilisateur trouvé
+     */
+    @Query("SELECT u.userId AS userId, u.userName AS userName FROM AppUser u WHERE u.userId IN :ids")
+    List<FriendIdView> findUserNamesByIds(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Charge et verrouille en écriture ({@code SELECT ... FOR UPDATE}) les utilisateurs demandés.
+     * <p>
+     * Les lignes sont parcourues et donc verrouillées dans l'ordre croissant de leur identifiant :
+     * deux transferts croisés (A paie B pendant que B paie A) demandent leurs verrous dans le même ordre
+     * et ne peuvent pas s'interbloquer. L'attente d'un verrou est bornée par {@code innodb_lock_wait_timeout}
+     * (voir application.properties).
+     * </p>
+     *
+     * @param ids identifiants des utilisateurs à verrouiller
+     * @return les utilisateurs verrouillés, triés par identifiant croissant
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM AppUser u WHERE u.userId IN :ids ORDER BY u.userId ASC")
+    List<AppUser> findAllByIdsForUpdate(@Param("ids") Collection<Integer> ids);
 }
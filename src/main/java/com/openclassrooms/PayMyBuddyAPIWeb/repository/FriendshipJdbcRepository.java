@@ -0,0 +1,119 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.repository;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Repository JDBC dédié à la table de jointure user_friendship.
+ * <p>
+ * Les relations sont écrites directement dans la table de jointure, sans charger l'utilisateur
+ * ni sa collection d'amis : le coût d'un ajout ne dépend pas du nombre d'amis déjà présents.
+ * </p>
+ * <p>
+ * La date du dernier paiement de chaque relation (last_transfer_at) est tenue à jour par les transferts,
+ * dans leur transaction : les contacts récents se lisent ensuite sur l'index (user_id, last_transfer_at DESC).
+ * </p>
+ */
+@Repository
+public class FriendshipJdbcRepository {
+
+    /**
+     * Ajoute une relation ; une relation déjà présente est ignorée (0 ligne insérée).
+     * La clé primaire (user_id, friend_id) sert à la fois de vérification d'existence et de garde-fou
+     * contre deux ajouts simultanés.
+     */
+    private static final String ADD_FRIEND_SQL =
+            "INSERT IGNORE INTO user_friendship (user_id, friend_id) VALUES (?, ?)";
+
+    /** Amis parmi une liste d'identifiants (complétée par autant de "?" que d'identifiants) */
+    private static final String FIND_FRIEND_IDS_SQL =
+            "SELECT friend_id FROM user_friendship WHERE user_id = ? AND friend_id IN (";
+
+    /** Date du dernier paiement de l'ami {@code friend_id} par l'utilisateur {@code user_id} */
+    private static final String RECORD_TRANSFER_SQL =
+            "UPDATE user_friendship SET last_transfer_at = ? WHERE user_id = ? AND friend_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public FriendshipJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Ajoute {@code friendId} à la liste d'amis de {@code userId} (relation unidirectionnelle).
+     * <p>
+     * Les deux identifiants doivent désigner des utilisateurs existants : INSERT IGNORE ne signale pas
+     * une clé étrangère invalide.
+     *
+     * @param userId   identifiant du propriétaire de la liste d'amis
+     * @param friendId identifiant de l'ami ajouté
+     * @return {@code true} si la relation vient d'être ajoutée, {@code false} si elle existait déjà
+     */
+    public boolean addFriend(int userId, int friendId) {
+        return jdbcTemplate.update(ADD_FRIEND_SQL, userId, friendId) == 1;
+    }
+
+    /**
+     * Parmi des utilisateurs, renvoie ceux qui sont déjà amis de {@code userId}, en une seule requête
+     * (lecture de la clé primaire).
+     *
+     * @param userId       identifiant du propriétaire de la liste d'amis
+     * @param candidateIds identifiants à vérifier (non vide)
+     * @return les identifiants déjà présents dans la liste d'amis
+     */
+    public List<Integer> findFriendIds(int userId, Collection<Integer> candidateIds) {
+        String sql = FIND_FRIEND_IDS_SQL + String.join(", ", Collections.nCopies(candidateIds.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>(candidateIds.size() + 1);
+        args.add(userId);
+        args.addAll(candidateIds);
+        return jdbcTemplate.queryForList(sql, Integer.class, args.toArray());
+    }
+
+    /**
+     * Ajoute plusieurs amis à la liste de {@code userId}, en un seul lot JDBC
+     * (réécrit en un seul INSERT multi-lignes par rewriteBatchedStatements) ; une relation déjà présente est ignorée.
+     * <p>
+     * Le pilote ne renvoie pas de compte par ligne pour un INSERT réécrit : filtrer au préalable les relations
+     * existantes ({#findFriendIds}) pour savoir lesquelles sont ajoutées.
+     *
+     * @param userId    identifiant du propriétaire de la liste d'amis
+     * @param friendIds identifiants des amis ajoutés (utilisateurs existants)
+     */
+    public void addFriends(int userId, Collection<Integer> friendIds) {
+        List<Object[]> args = friendIds.stream().map(friendId -> new Object[]{userId, friendId}).toList();
+        jdbcTemplate.batchUpdate(ADD_FRIEND_SQL, args);
+    }
+
+    /**
+     * Reporte des transferts sur les relations de leurs expéditeurs (last_transfer_at), en un seul lot JDBC.
+     * <p>
+     * Une seule mise à jour par couple (expéditeur, destinataire), avec la date du transfert le plus récent.
+     * Les lignes sont modifiées dans l'ordre de leur clé primaire, ce qui évite les interblocages entre lots.
+     * À appeler dans la transaction du transfert.
+     *
+     * @param transactions transactions enregistrées (expéditeur, destinataire et date de création renseignés)
+     * @return le nombre de lignes modifiées pour chaque couple (0 si le destinataire n'est pas un ami de l'expéditeur)
+     */
+    public int[] recordTransfers(Collection<AppTransaction> transactions) {
+        // clé : (user_id, friend_id) dans l'ordre de la clé primaire
+        Map<Long, LocalDateTime> latest = new TreeMap<>();
+        for (AppTransaction tx : transactions) {
+            long key = ((long) tx.getSender().getUserId() << 32) | (tx.getReceiver().getUserId() & 0xffffffffL);
+            latest.merge(key, tx.getTransactionCreatedAt(), (a, b) -> a.isAfter(b) ? a : b);
+        }
+        List<Object[]> args = latest.entrySet().stream()
+                .map(e -> new Object[]{Timestamp.valueOf(e.getValue()), (int) (e.getKey() >>> 32), e.getKey().intValue()})
+                .toList();
+        return jdbcTemplate.batchUpdate(RECORD_TRANSFER_SQL, args);
+    }
+}
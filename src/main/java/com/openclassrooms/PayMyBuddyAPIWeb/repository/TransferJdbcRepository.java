@@ -0,0 +1,176 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository JDBC dédié aux mouvements de solde des transferts.
+ * <p>
+ * Les soldes sont modifiés directement en SQL, sans charger les entités {AppUser} :
+ * le débit est conditionné par le solde disponible (vérifié par la base elle-même),
+ * ce qui supprime la séquence lecture / modification / écriture et sa fenêtre de concurrence.
+ * Chaque mouvement incrémente aussi le compteur de transactions du compte (tx_count), dans la même requête.
+ * </p>
+ *
+ * <p>Ces méthodes doivent être appelées dans une transaction : en cas d'échec du débit,
+ * c'est le rollback de la transaction qui annule le crédit déjà appliqué.</p>
+ */
+@Repository
+public class TransferJdbcRepository {
+
+    /**
+     * Applique un delta (positif ou négatif) au solde d'un utilisateur et incrémente son compteur de transactions,
+     * uniquement si le solde résultant reste positif ou nul (débit d'un paiement groupé, lots du traitement groupé).
+     */
+    private static final String APPLY_BALANCE_DELTA_SQL =
+            "UPDATE app_user SET balance = balance + ?, tx_count = tx_count + ? WHERE id = ? AND balance + ? >= 0";
+
+    /**
+     * Réserve une clé d'idempotence ; une clé déjà présente est ignorée (0 ligne insérée).
+     * Si la même clé est en cours d'insertion par une autre transaction, InnoDB fait attendre
+     * celle-ci jusqu'au commit (ou rollback) de la première.
+     */
+    private static final String CLAIM_IDEMPOTENCY_KEY_SQL =
+            "INSERT IGNORE INTO transfer_idempotency (user_id, scope, idempotency_key) VALUES (?, ?, ?)";
+
+    /**
+     * Débite l'expéditeur et crédite le destinataire en une seule requête (un seul aller-retour) :
+     * paramètres = expéditeur, -montant, +montant, expéditeur, destinataire, expéditeur, montant.
+     * La condition de solde ne porte que sur la ligne de l'expéditeur.
+     */
+    private static final String DEBIT_AND_CREDIT_SQL =
+            "UPDATE app_user SET balance = balance + CASE id WHEN ? THEN ? ELSE ? END, tx_count = tx_count + 1"
+                    + " WHERE id IN (?, ?) AND (id <> ? OR balance >= ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TransferJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Débite l'expéditeur et crédite le destinataire en une seule requête.
+     * <p>
+     * Si le solde de l'expéditeur est insuffisant, sa ligne n'est pas modifiée mais celle du destinataire l'est :
+     * l'appelant doit alors annuler la transaction (rollback), ce que fait l'exception qu'il lève.
+     * </p>
+     *
+     * @param senderId   identifiant de l'expéditeur
+     * @param receiverId identifiant du destinataire
+     * @param amount     montant du transfert (strictement positif)
+     * @return {@code true} si les deux comptes ont été modifiés ; {@code false} si le solde est insuffisant
+     *         (ou si un compte n'existe pas)
+     */
+    public boolean debitAndCredit(int senderId, int receiverId, BigDecimal amount) {
+        return jdbcTemplate.update(DEBIT_AND_CREDIT_SQL,
+                senderId, amount.negate(), amount, senderId, receiverId, senderId, amount) == 2;
+    }
+
+    /**
+     * Applique en un seul lot JDBC les variations de solde nettes de plusieurs comptes
+     * (utilisé par le traitement groupé des transferts).
+     * <p>
+     * Chaque variation reste conditionnée par un solde final positif ou nul.
+     *
+     * @param changes variation de solde et nombre de transactions par identifiant d'utilisateur
+     * @return le nombre de lignes modifiées pour chaque variation, dans l'ordre d'itération de la map
+     */
+    public int[] applyBalanceDeltas(Map<Integer, AccountChange> changes) {
+        List<Object[]> args = changes.entrySet().stream()
+                .map(e -> new Object[]{e.getValue().delta(), e.getValue().transactions(), e.getKey(), e.getValue().delta()})
+                .toList();
+        return jdbcTemplate.batchUpdate(APPLY_BALANCE_DELTA_SQL, args);
+    }
+
+    /**
+     * Débite un compte, uniquement si son solde est suffisant.
+     * <p>
+     * La mise à jour pose le verrou de ligne de l'expéditeur jusqu'à la fin de la transaction.
+     *
+     * @param userId       identifiant du compte à débiter
+     * @param amount       montant à débiter (strictement positif)
+     * @param transactions nombre de transactions correspondant à ce débit
+     * @return 1 si le compte a été débité, 0 si le solde est insuffisant ou le compte inexistant
+     */
+    public int debit(int userId, BigDecimal amount, int transactions) {
+        BigDecimal debit = amount.negate();
+        return jdbcTemplate.update(APPLY_BALANCE_DELTA_SQL, debit, transactions, userId, debit);
+    }
+
+    /**
+     * Crédite plusieurs comptes en une seule requête :
+     * {@code UPDATE app_user SET balance = balance + CASE id WHEN ? THEN ? ... END,
+     * tx_count = tx_count + CASE id WHEN ? THEN ? ... END WHERE id IN (...)}.
+     *
+     * @param credits montant à créditer et nombre de transactions par identifiant d'utilisateur
+     * @return le nombre de comptes crédités
+     */
+    public int creditAll(Map<Integer, AccountChange> credits) {
+        StringBuilder sql = new StringBuilder("UPDATE app_user SET balance = balance + CASE id");
+        List<Object> args = new ArrayList<>(credits.size() * 5);
+        credits.forEach((userId, change) -> {
+            sql.append(" WHEN ? THEN ?");
+            args.add(userId);
+            args.add(change.delta());
+        });
+        sql.append(" END, tx_count = tx_count + CASE id");
+        credits.forEach((userId, change) -> {
+            sql.append(" WHEN ? THEN ?");
+            args.add(userId);
+            args.add(change.transactions());
+        });
+        sql.append(" END WHERE id IN (")
+                .append(String.join(", ", Collections.nCopies(credits.size(), "?")))
+                .append(')');
+        args.addAll(credits.keySet());
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * Réserve une clé d'idempotence pour un expéditeur, dans la transaction courante.
+     * <p>
+     * À appeler avant toute modification de solde : si la clé existe déjà, le transfert est un rejeu
+     * et ne doit pas être appliqué. Le rollback de la transaction libère la clé.
+     *
+     * @param userId identifiant de l'expéditeur
+     * @param scope  type d'opération : une même clé peut servir une fois par type
+     * @param key    clé d'idempotence fournie par le client (64 caractères au plus)
+     * @return {@code true} si la clé vient d'être réservée, {@code false} si elle était déjà utilisée
+     */
+    public boolean claimIdempotencyKey(int userId, IdempotencyScope scope, String key) {
+        return jdbcTemplate.update(CLAIM_IDEMPOTENCY_KEY_SQL, userId, scope.name(), key) == 1;
+    }
+
+    /**
+     * Type d'opération d'une clé d'idempotence (colonne transfer_idempotency.scope).
+     */
+    public enum IdempotencyScope {
+        /** Transfert simple */
+        TRANSFER,
+        /** Paiement groupé */
+        BATCH
+    }
+
+    /**
+     * Mouvement à appliquer à un compte : variation de solde et nombre de transactions concernées.
+     *
+     * @param delta        variation de solde (négative pour un débit)
+     * @param transactions nombre de transactions à ajouter au compteur du compte
+     */
+    public record AccountChange(BigDecimal delta, int transactions) {
+
+        /**
+         * @param other mouvement à cumuler
+         * @return la somme des deux mouvements
+         */
+        public AccountChange plus(AccountChange other) {
+            return new AccountChange(delta.add(other.delta), transactions + other.transactions);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.repository.projection;
+
+/**
+ * Projection Spring Data : identifiant et nom d'utilisateur d'un ami,
+ * sans charger l'entité {AppUser} complète.
+ */
+public interface FriendIdView {
+
+    /** @return identifiant de l'ami */
+    Integer getUserId();
+
+    /** @return nom d'utilisateur de l'ami */
+    String getUserName();
+}
@@ -0,0 +1,28 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projection Spring Data d'une ligne de l'historique des transactions, vue par un utilisateur.
+ * <p>
+ * Le nom de la contrepartie et le signe du montant sont calculés en SQL :
+ * aucune entité {AppTransaction} ni {AppUser} n'est chargée.
+ */
+public interface TransferHistoryRow {
+
+    /** @return identifiant de la transaction (position du curseur) */
+    Integer getId();
+
+    /** @return date de création de la transaction (position du curseur) */
+    LocalDateTime getCreatedAt();
+
+    /** @return nom d'utilisateur de la contrepartie (destinataire si envoyé, expéditeur si reçu) */
+    String getRelation();
+
+    /** @return description du transfert */
+    String getDescription();
+
+    /** @return montant signé : négatif si l'utilisateur a payé, positif s'il a reçu */
+    BigDecimal getMontant();
+}
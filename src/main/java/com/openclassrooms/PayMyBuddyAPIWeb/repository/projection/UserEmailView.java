@@ -0,0 +1,14 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.repository.projection;
+
+/**
+ * Projection Spring Data : identifiant et email d'un utilisateur,
+ * sans charger l'entité {AppUser} complète.
+ */
+public interface UserEmailView {
+
+    /** @return identifiant de l'utilisateur */
+    Integer getUserId();
+
+    /** @return email de l'utilisateur */
+    String getEmail();
+}
@@ -0,0 +1,202 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.AccountLockTimeoutException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Table de verrous mémoire "rayée" (striped) protégeant les comptes pendant un transfert.
+ * <p>
+ * Chaque identifiant d'utilisateur est associé à l'un des N verrous de la table (N puissance de 2).
+ * Les transferts en conflit sur ce nœud attendent ici, en mémoire, au lieu d'attendre un verrou InnoDB
+ * en gardant une connexion Hikari ouverte. Les verrous d'un transfert sont toujours pris dans l'ordre
+ * croissant de leur index (et un index partagé n'est pris qu'une fois) : pas d'interblocage possible.
+ * </p>
+ *
+ * <p>Métriques exposées (Micrometer, /actuator/metrics) pour dimensionner la table :</p>
+ * <ul>
+ *     <li>paymybuddy.account.locks.acquisitions : nombre de verrous obtenus</li>
+ *     <li>paymybuddy.account.locks.contended : nombre de verrous déjà pris au moment de la demande</li>
+ *     <li>paymybuddy.account.locks.timeouts : nombre d'abandons après le délai d'attente</li>
+ *     <li>paymybuddy.account.locks.wait : temps total passé à attendre un verrou (secondes)</li>
+ *     <li>paymybuddy.account.locks.stripes.contended / .max : nombre de verrous ayant subi de la contention,
+ *         et contention maximale d'un même verrou (un maximum élevé avec peu de verrous concernés
+ *         indique des comptes "chauds" plutôt qu'une table trop petite)</li>
+ * </ul>
+ */
+@Component
+public class AccountLockManager {
+
+    private final ReentrantLock[] stripes;
+
+    private final int mask;
+
+    private final long acquireTimeoutMs;
+
+    private final LongAdder acquisitions = new LongAdder();
+
+    private final LongAdder contended = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder();
+
+    /** Contention observée par verrou */
+    private final AtomicLongArray stripeContention;
+
+    /**
+     * @param stripeCount      nombre de verrous souhaité (arrondi à la puissance de 2 supérieure)
+     * @param acquireTimeoutMs attente maximale pour obtenir l'ensemble des verrous d'un transfert
+     * @param meterRegistry    registre Micrometer où publier les compteurs
+     */
+    public AccountLockManager(@Value("${paymybuddy.transfer.lock-stripes:4096}") int stripeCount,
+                              @Value("${paymybuddy.transfer.lock-acquire-timeout-ms:2000}") long acquireTimeoutMs,
+                              MeterRegistry meterRegistry) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.stripeContention = new AtomicLongArray(size);
+        registerMetrics(meterRegistry);
+    }
+
+    /**
+     * Verrouille les comptes demandés, dans l'ordre canonique des verrous.
+     * <p>
+     * À utiliser dans un try-with-resources : la fermeture du {@link AccountLocks} libère les verrous.
+     *
+     * @param userIds identifiants des comptes à protéger
+     * @return les verrous obtenus
+     * @throws AccountLockTimeoutException si les verrous n'ont pas pu être obtenus dans le délai imparti
+     */
+    public AccountLocks lock(int... userIds) {
+        int[] indexes = new int[userIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            indexes[i] = stripeIndex(userIds[i]);
+        }
+        indexes = Arrays.stream(indexes).sorted().distinct().toArray();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        int acquired = 0;
+        try {
+            for (int index : indexes) {
+                acquire(index, deadline);
+                acquired++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(indexes, acquired);
+            throw new AccountLockTimeoutException("Attente du verrou interrompue.");
+        } catch (AccountLockTimeoutException e) {
+            release(indexes, acquired);
+            throw e;
+        }
+        return new AccountLocks(indexes);
+    }
+
+    /**
+     * Index du verrou associé à un compte.
+     * Les identifiants sont mélangés afin que des identifiants proches ne tombent pas sur des verrous voisins.
+     *
+     * @param userId identifiant du compte
+     * @return index du verrou dans la table
+     */
+    int stripeIndex(int userId) {
+        int h = userId * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void acquire(int index, long deadline) throws InterruptedException {
+        ReentrantLock lock = stripes[index];
+        if (!lock.tryLock()) {
+            contended.increment();
+            stripeContention.incrementAndGet(index);
+            long start = System.nanoTime();
+            boolean locked = lock.tryLock(deadline - start, TimeUnit.NANOSECONDS);
+            waitNanos.add(System.nanoTime() - start);
+            if (!locked) {
+                timeouts.increment();
+                throw new AccountLockTimeoutException("Trop de transferts en cours sur ce compte, réessayez plus tard.");
+            }
+        }
+        acquisitions.increment();
+    }
+
+    private void release(int[] indexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("paymybuddy.account.locks.acquisitions", acquisitions, LongAdder::sum)
+                .description("Verrous de compte obtenus").register(registry);
+        FunctionCounter.builder("paymybuddy.account.locks.contended", contended, LongAdder::sum)
+                .description("Verrous de compte déjà pris au moment de la demande").register(registry);
+        FunctionCounter.builder("paymybuddy.account.locks.timeouts", timeouts, LongAdder::sum)
+                .description("Abandons après le délai d'attente d'un verrou").register(registry);
+        FunctionCounter.builder("paymybuddy.account.locks.wait", waitNanos, w -> w.sum() / 1e9)
+                .baseUnit("seconds").description("Temps total d'attente des verrous").register(registry);
+        Gauge.builder("paymybuddy.account.locks.stripes", stripes, s -> s.length)
+                .description("Nombre de verrous dans la table").register(registry);
+        Gauge.builder("paymybuddy.account.locks.stripes.contended", this, m -> m.contendedStripes())
+                .description("Nombre de verrous ayant subi de la contention").register(registry);
+        Gauge.builder("paymybuddy.account.locks.stripes.max", this, m -> m.maxStripeContention())
+                .description("Contention maximale observée sur un même verrou").register(registry);
+    }
+
+    long contendedCount() {
+        return contended.sum();
+    }
+
+    long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    long contendedStripes() {
+        long count = 0;
+        for (int i = 0; i < stripeContention.length(); i++) {
+            if (stripeContention.get(i) > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    long maxStripeContention() {
+        long max = 0;
+        for (int i = 0; i < stripeContention.length(); i++) {
+            max = Math.max(max, stripeContention.get(i));
+        }
+        return max;
+    }
+
+    /**
+     * Verrous obtenus pour un transfert ; {@link #close()} les libère dans l'ordre inverse.
+     */
+    public final class AccountLocks implements AutoCloseable {
+
+        private final int[] indexes;
+
+        private AccountLocks(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        public void close() {
+            release(indexes, indexes.length);
+        }
+    }
+}
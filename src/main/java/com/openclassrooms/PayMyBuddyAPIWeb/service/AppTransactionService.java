@@ -1,26 +1,66 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.service;
 
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.BatchTransferFormDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferFormDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferHistoryDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferHistoryPageDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.AccountLockTimeoutException;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
-import jakarta.transaction.Transactional;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.FriendshipJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository.AccountChange;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository.IdempotencyScope;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.FriendIdView;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.TransferHistoryRow;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class AppTransactionService {
 
+    /** Ordre des lignes exportées : date de création, puis identifiant */
+    private static final Comparator<TransferHistoryRow> CHRONOLOGICAL = Comparator
+            .comparing(TransferHistoryRow::getCreatedAt)
+            .thenComparing(TransferHistoryRow::getId);
+
+    /** Position de départ d'un export : avant la plus petite valeur DATETIME de MySQL */
+    private static final LocalDateTime EXPORT_START = LocalDateTime.of(1000, 1, 1, 0, 0);
+
     @Autowired
     private AuthenticationService authenticationService;
 
@@ -30,85 +70,153 @@ public class AppTransactionService {
     @Autowired
     private AppTransactionRepository appTransactionRepository;
 
-    // VERSION SANS PAGINATION
-    /**
-     * Récupère l'historique complet des transactions de l'utilisateur (sans pagination).
-     *
-     * @return liste de {TransferHistoryDTO} représentant les transactions
-     */
-    public List<TransferHistoryDTO> getTransactionHistoryForCurrentUser() {
-        AppUser currentUser = authenticationService.getAuthenticatedUserEntity();
-
-        // Récupérer toutes les transactions envoyées (l'utilisateur est l'expéditeur)
-        List<TransferHistoryDTO> sent = currentUser.getSentTransactions().stream()
-                .map(tx -> new TransferHistoryDTO(
-                        tx.getReceiver().getUserName(), //celui qui a reçu
-                        tx.getDescription(),
-                        tx.getAmountTransaction().negate() // montant négatif, car l'utilisateur a payé
-                ))
-                .toList();
+    @Autowired
+    private TransferJdbcRepository transferJdbcRepository;
 
-        // Récupérer toutes les transactions reçues (l'utilisateur est le destinataire)
-        List<TransferHistoryDTO> received = currentUser.getReceivedTransactions().stream()
-                .map(tx -> new TransferHistoryDTO(
-                        tx.getSender().getUserName(), // celui qui a envoyé
-                        tx.getDescription(),
-                        tx.getAmountTransaction() // montant positif, car l'utilisateur l'a reçu
-                ))
-                .toList();
+    @Autowired
+    private FriendshipJdbcRepository friendshipJdbcRepository;
 
-        // Fusionner les deux
-        List<TransferHistoryDTO> all = new java.util.ArrayList<>();
-        all.addAll(sent);
-        all.addAll(received);
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
-        return all;
-    }
+    @Autowired
+    private AccountLockManager accountLockManager;
+
+    @Autowired
+    private TransferPipeline transferPipeline;
+
+    @Autowired
+    private TransferIdempotencyCache transferIdempotencyCache;
+
+    @Autowired
+    private RecentHistoryCache recentHistoryCache;
+
+    /** Attente maximale (ms) de la confirmation d'un transfert en mode group commit */
+    @Value("${paymybuddy.transfer.group-commit.await-timeout-ms:10000}")
+    private long pipelineAwaitTimeoutMs;
+
+    @Autowired
+    private LockRetryPolicy lockRetryPolicy;
+
+    /** Nombre de lignes lues par requête, pour chaque côté de l'historique, pendant un export */
+    @Value("${paymybuddy.history.export.page-size:1000}")
+    private int exportPageSize;
 
-    // NOUVELLE VERSION PAGINÉE
+    // EXPORT DE L'HISTORIQUE COMPLET
     /**
-     * Récupère l'historique paginé des transactions de l'utilisateur,
-     *  trié de la plus récente à la plus ancienne.
+     * Prépare l'export de l'historique complet des transactions de l'utilisateur connecté.
+     * <p>
+     * L'utilisateur est résolu tout de suite (thread de la requête). Les transactions envoyées et reçues sont lues
+     * séparément, par pages de {@code paymybuddy.history.export.page-size} lignes dans l'ordre de leur index
+     * ({AppTransactionRepository#findSentHistoryAfter}, {AppTransactionRepository#findReceivedHistoryAfter}),
+     * puis fusionnées par date et écrites une à une dans la réponse. MySQL ne trie jamais l'historique complet
+     * et la mémoire utilisée ne dépend pas de sa taille. Les pages sont lues dans une même transaction en lecture
+     * seule : l'export reflète un instantané cohérent.
      *
-     * @param page numéro de la page (0-indexée)
-     * @param size nombre de transactions par page
-     * @return liste de {TransferHistoryDTO} correspondant à la page
+     * @param format format du fichier (CSV ou JSON Lines)
+     * @return le corps de la réponse, écrit par Spring MVC après le retour du contrôleur
      */
-    public List<TransferHistoryDTO> getTransactionHistoryForCurrentUser(int page, int size) {
-        AppUser currentUser = authenticationService.getAuthenticatedUserEntity();
-
-        Pageable pageable = PageRequest.of(page, size);
-        Page<AppTransaction> transactionPage =
-                appTransactionRepository.findBySenderOrReceiverOrderByTransactionCreatedAtDesc(currentUser, currentUser, pageable);
-
-        return transactionPage.stream()
-                .map(tx -> {
-                    if (tx.getSender().equals(currentUser)) {
-                        return new TransferHistoryDTO(
-                                tx.getReceiver().getUserName(),
-                                tx.getDescription(),
-                                tx.getAmountTransaction().negate()
-                        );
-                    } else {
-                        return new TransferHistoryDTO(
-                                tx.getSender().getUserName(),
-                                tx.getDescription(),
-                                tx.getAmountTransaction()
-                        );
+    public StreamingResponseBody exportHistoryForCurrentUser(HistoryExportFormat format) {
+        int userId = authenticationService.getAuthenticatedUserId();
+        return outputStream -> {
+            TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+            readOnly.setReadOnly(true);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            readOnly.executeWithoutResult(status -> {
+                HistorySide sent = new HistorySide((createdAt, id) ->
+                        appTransactionRepository.findSentHistoryAfter(userId, createdAt, id, exportPageSize));
+                HistorySide received = new HistorySide((createdAt, id) ->
+                        appTransactionRepository.findReceivedHistoryAfter(userId, createdAt, id, exportPageSize));
+                try {
+                    format.writeHeader(writer);
+                    while (sent.hasNext() || received.hasNext()) {
+                        TransferHistoryRow row = !received.hasNext()
+                                || (sent.hasNext() && CHRONOLOGICAL.compare(sent.peek(), received.peek()) < 0)
+                                ? sent.next() : received.next();
+                        format.writeRow(writer, row.getCreatedAt(), row.getRelation(), row.getDescription(), row.getMontant());
                     }
-                })
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+        };
+    }
+
+    // VERSION PAGINÉE PAR CURSEUR
+    /**
+     * Récupère une page de l'historique des transactions de l'utilisateur, par curseur (keyset) :
+     * la lecture reprend directement après la dernière transaction affichée, sans OFFSET,
+     * donc le coût d'une page ne dépend pas de sa position dans l'historique.
+     * <p>
+     * Une ligne de plus que la taille demandée est lue pour savoir s'il reste des transactions dans ce sens.
+     * La première page est servie par le cache des dernières transactions ({RecentHistoryCache}).
+     * Une seule requête SQL par page : la projection {TransferHistoryRow} fournit directement le nom
+     * de la contrepartie et le montant signé, sans charger les entités ni leurs utilisateurs (EAGER).
+     *
+     * @param cursorToken jeton opaque de la page à afficher ({HistoryCursor}), ou null pour la première page
+     * @param size        nombre de transactions par page
+     * @return la page demandée et les jetons des pages voisines
+     * @throws IllegalArgumentException si le jeton est invalide
+     */
+    public TransferHistoryPageDTO getTransactionHistoryPage(String cursorToken, int size) {
+        int userId = authenticationService.getAuthenticatedUserId();
+        HistoryCursor cursor = StringUtils.hasText(cursorToken) ? HistoryCursor.decode(cursorToken) : null;
+        int limit = size + 1;
+
+        List<TransferHistoryRow> rows;
+        boolean hasOlder;
+        boolean hasNewer;
+        if (cursor == null) {
+            rows = recentHistoryCache.findLatest(userId, limit);
+            hasOlder = rows.size() > size;
+            hasNewer = false;
+        } else if (cursor.older()) {
+            rows = appTransactionRepository.findOlderHistory(userId, cursor.createdAt(), cursor.id(), limit);
+            hasOlder = rows.size() > size;
+            hasNewer = true;
+        } else {
+            rows = appTransactionRepository.findNewerHistory(userId, cursor.createdAt(), cursor.id(), limit);
+            hasNewer = rows.size() > size;
+            hasOlder = true;
+        }
+        rows = new ArrayList<>(rows.subList(0, Math.min(size, rows.size())));
+        if (cursor != null && !cursor.older()) {
+            Collections.reverse(rows); // lues dans l'ordre chronologique, affichées de la plus récente à la plus ancienne
+        }
+
+        String nextCursor = null;
+        String previousCursor = null;
+        if (!rows.isEmpty()) {
+            TransferHistoryRow first = rows.get(0);
+            TransferHistoryRow last = rows.get(rows.size() - 1);
+            if (hasOlder) {
+                nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId(), true).encode();
+            }
+            if (hasNewer) {
+                previousCursor = new HistoryCursor(first.getCreatedAt(), first.getId(), false).encode();
+            }
+        }
+
+        // Contrepartie et signe déjà calculés par la requête : simple recopie dans le DTO
+        List<TransferHistoryDTO> transactions = rows.stream()
+                .map(row -> new TransferHistoryDTO(row.getRelation(), row.getDescription(), row.getMontant()))
                 .toList();
+        return new TransferHistoryPageDTO(transactions, nextCursor, previousCursor);
     }
 
     // Utile pour calculer le nombre total de pages en fonction du nombre de transactions par page
     /**
      * Compte le nombre total de transactions de l'utilisateur connecté.
+     * <p>
+     * Lit le compteur tx_count tenu à jour par les transferts (lecture par clé primaire) :
+     * le coût ne dépend pas de la taille de l'historique. Voir {TransactionCountRepairJob} pour le recalcul.
      *
      * @return nombre total de transactions
      */
     public int countTransactionsForCurrentUser() {
-        AppUser currentUser = authenticationService.getAuthenticatedUserEntity();
-        return appTransactionRepository.countBySenderOrReceiver(currentUser, currentUser);
+        int userId = authenticationService.getAuthenticatedUserId();
+        return appUserRepository.findTransactionCountById(userId).orElse(0);
     }
 
     /**
@@ -117,22 +225,29 @@ public class AppTransactionService {
      * <p>
      * La méthode effectue les étapes suivantes :
      * <ol>
-     *     <li>Récupère l'utilisateur authentifié (expéditeur) via le contexte de sécurité.</li>
-     *     <li>Récupère le destinataire en utilisant le nom d'utilisateur fourni dans {TransferFormDTO}.</li>
-     *     <li>Vérifie que l'expéditeur ne tente pas de se transférer de l'argent à lui-même.</li>
-     *     <li>Vérifie que le destinataire est bien un ami de l'expéditeur.</li>
+     *     <li>Récupère l'identifiant de l'utilisateur authentifié (expéditeur).</li>
+     *     <li>Si la clé d'idempotence est dans le cache des transferts récents, s'arrête là (rejeu déjà exécuté).</li>
      *     <li>Vérifie que le montant du transfert est valide (non nul et positif).</li>
-     *     <li>Vérifie que le solde de l'expéditeur est suffisant pour effectuer le transfert.</li>
-     *     <li>Met à jour les soldes de l'expéditeur et du destinataire.</li>
-     *     <li>Persiste les changements dans la base de données pour les deux utilisateurs.</li>
-     *     <li>Crée et enregistre un objet {AppTransaction} représentant le transfert.</li>
+     *     <li>Récupère l'identifiant du destinataire parmi les amis de l'expéditeur (une seule jointure).</li>
+     *     <li>En mode group commit ({TransferPipeline}), dépose le transfert dans la file et attend le commit de son lot.</li>
+     *     <li>Sinon, prend les verrous mémoire des deux comptes ({AccountLockManager}) avant toute connexion à la base.</li>
+     *     <li>Dans une transaction courte : réserve la clé d'idempotence (un rejeu s'arrête là, sans toucher aux soldes),
+     *         verrouille les deux comptes dans l'ordre croissant des identifiants,
+     *         débite l'expéditeur (uniquement si son solde est suffisant) et crédite le destinataire
+     *         en une seule requête, puis enregistre l'{AppTransaction}.</li>
      * </ol>
+     * <p>
+     * Le contrôle du solde est fait par la base dans la requête de débit : deux transferts concurrents
+     * ne peuvent donc pas rendre un solde négatif. Si le débit échoue, le rollback annule le crédit.
+     * Si un verrou ne peut pas être obtenu à temps (attente bornée ou interblocage détecté par MySQL),
+     * la transaction est rejouée jusqu'à {@code paymybuddy.transfer.lock-retry.max-attempts} fois.
      *
      * @param dto objet {TransferFormDTO} contenant :
      *            <ul>
      *                <li>relation : nom d'utilisateur du destinataire</li>
      *                <li>description : description du transfert</li>
      *                <li>montant : montant du transfert</li>
+     *                <li>idempotencyKey : clé d'idempotence (optionnelle)</li>
      *            </ul>
      *
      * @throws IllegalArgumentException si :
@@ -143,24 +258,17 @@ public class AppTransactionService {
      *             <li>le montant est nul ou négatif</li>
      *             <li>le solde de l'expéditeur n'est pas suffisant</li>
      *         </ul>
+     * @throws PessimisticLockingFailureException si les verrous n'ont pas pu être obtenus après toutes les tentatives
+     * @throws AccountLockTimeoutException si les verrous mémoire des comptes n'ont pas pu être obtenus à temps
      */
-    @Transactional
     public void processTransfer(@Valid TransferFormDTO dto) {
-        // Récupère l'utilisateur authentifié sous forme d'entité
-        AppUser sender = authenticationService.getAuthenticatedUserEntity();
+        // Récupère uniquement l'identifiant de l'utilisateur authentifié
+        int senderId = authenticationService.getAuthenticatedUserId();
 
-        // Cherche le destinataire
-        AppUser receiver = appUserRepository.findByUserName(dto.getRelation())
-                .orElseThrow(() -> new IllegalArgumentException("Relation introuvable"));
-
-        if (sender.getUserId() ==receiver.getUserId()) {
-            throw new IllegalArgumentException("Vous ne pouvez pas vous payer vous-même.");
-        }
-
-        // Vérifie que le receiver est bien un ami
-        boolean areFriends = sender.getFriends().contains(receiver);
-        if (!areFriends) {
-            throw new IllegalArgumentException("La relation sélectionnée n'est pas dans votre liste d'amis.");
+        // Rejeu d'un transfert déjà commité : confirmé sans accès à la base
+        String idempotencyKey = idempotencyKey(dto.getIdempotencyKey());
+        if (isRecentReplay(senderId, IdempotencyScope.TRANSFER, idempotencyKey)) {
+            return;
         }
 
         BigDecimal amount = dto.getMontant();
@@ -168,26 +276,321 @@ public class AppTransactionService {
             throw new IllegalArgumentException("Montant invalide.");
         }
 
-        // Vérifie le solde disponible
-        if (sender.getBalance().compareTo(amount) < 0) {
-            throw new IllegalArgumentException("Solde insuffisant.");
+        // Cherche le destinataire parmi les amis de l'expéditeur
+        int receiverId = appUserRepository.findFriendIdByUserName(senderId, dto.getRelation())
+                .orElseThrow(() -> invalidRelation(senderId, dto.getRelation()));
+
+        // Mode group commit : le transfert est appliqué par lot, on attend le commit de son lot
+        if (transferPipeline.isEnabled()) {
+            awaitPipeline(transferPipeline.submit(senderId, receiverId, amount, dto.getDescription(), idempotencyKey));
+            rememberIdempotencyKey(senderId, IdempotencyScope.TRANSFER, idempotencyKey);
+            return;
+        }
+
+        // Les transferts concurrents sur les mêmes comptes attendent en mémoire, avant d'ouvrir une transaction
+        try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(senderId, receiverId)) {
+            executeWithLockRetry("Transfert " + senderId + " -> " + receiverId,
+                    () -> applyTransfer(senderId, receiverId, amount, dto.getDescription(), idempotencyKey));
+        }
+        rememberIdempotencyKey(senderId, IdempotencyScope.TRANSFER, idempotencyKey);
+    }
+
+    /**
+     * Traite un paiement groupé : l'utilisateur connecté paie plusieurs amis en une seule opération atomique.
+     * <p>
+     * La méthode effectue les étapes suivantes :
+     * <ol>
+     *     <li>Vérifie les montants et calcule le total à débiter.</li>
+     *     <li>Récupère en une seule requête les identifiants de tous les bénéficiaires parmi les amis de l'expéditeur.</li>
+     *     <li>Prend les verrous mémoire de tous les comptes concernés ({AccountLockManager}).</li>
+     *     <li>Dans une seule transaction : verrouille les comptes de l'expéditeur et de tous les bénéficiaires
+     *         dans l'ordre croissant des identifiants, débite le total (uniquement si le solde le permet),
+     *         crédite tous les bénéficiaires en une requête, puis insère les {AppTransaction} en un lot JDBC.</li>
+     * </ol>
+     * <p>
+     * Tout ou rien : si une ligne est invalide ou si le solde ne couvre pas le total, aucun transfert n'est effectué.
+     * Le paiement groupé n'utilise pas le traitement groupé ({TransferPipeline}), qui ne garantit pas l'atomicité
+     * entre transferts.
+     *
+     * @param dto objet {BatchTransferFormDTO} contenant les lignes (relation, description, montant)
+     *            et une clé d'idempotence optionnelle (un rejeu n'est pas exécuté deux fois)
+     * @return le nombre de transferts effectués
+     * @throws IllegalArgumentException si une relation est invalide, si un montant est nul ou négatif,
+     *                                  ou si le solde de l'expéditeur ne couvre pas le total
+     * @throws PessimisticLockingFailureException si les verrous n'ont pas pu être obtenus après toutes les tentatives
+     * @throws AccountLockTimeoutException si les verrous mémoire des comptes n'ont pas pu être obtenus à temps
+     */
+    public int processBatchTransfer(@Valid BatchTransferFormDTO dto) {
+        int senderId = authenticationService.getAuthenticatedUserId();
+
+        String idempotencyKey = idempotencyKey(dto.getIdempotencyKey());
+        List<TransferFormDTO> lines = dto.getLines();
+        if (isRecentReplay(senderId, IdempotencyScope.BATCH, idempotencyKey)) {
+            return lines == null ? 0 : lines.size();
+        }
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("Ajoutez au moins un bénéficiaire.");
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        for (TransferFormDTO line : lines) {
+            if (line.getMontant() == null || line.getMontant().compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Montant invalide.");
+            }
+            total = total.add(line.getMontant());
         }
 
-        // Met à jour les soldes
-        sender.setBalance(sender.getBalance().subtract(amount));
-        receiver.setBalance(receiver.getBalance().add(amount));
+        // Tous les bénéficiaires en une seule requête
+        Set<String> relations = lines.stream().map(TransferFormDTO::getRelation).collect(Collectors.toSet());
+        Map<String, Integer> friendIds = appUserRepository.findFriendIdsByUserNames(senderId, relations).stream()
+                .collect(Collectors.toMap(FriendIdView::getUserName, FriendIdView::getUserId));
+        for (String relation : relations) {
+            if (!friendIds.containsKey(relation)) {
+                throw invalidRelation(senderId, relation);
+            }
+        }
 
-        // Sauvegarde les entités
-        appUserRepository.save(sender);
-        appUserRepository.save(receiver);
+        // Un même ami peut apparaître sur plusieurs lignes : un seul crédit par compte
+        Map<Integer, AccountChange> credits = new LinkedHashMap<>();
+        lines.forEach(line -> credits.merge(friendIds.get(line.getRelation()),
+                new AccountChange(line.getMontant(), 1), AccountChange::plus));
 
-        // Enregistre la transaction
+        int[] accountIds = new int[credits.size() + 1];
+        accountIds[0] = senderId;
+        int i = 1;
+        for (int receiverId : credits.keySet()) {
+            accountIds[i++] = receiverId;
+        }
+
+        BigDecimal debit = total;
+        try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(accountIds)) {
+            executeWithLockRetry("Paiement groupé de " + senderId + " (" + lines.size() + " lignes)",
+                    () -> applyBatchTransfer(senderId, debit, credits, lines, friendIds, idempotencyKey));
+        }
+        rememberIdempotencyKey(senderId, IdempotencyScope.BATCH, idempotencyKey);
+        return lines.size();
+    }
+
+    /**
+     * Applique un transfert dans la transaction courante.
+     * <p>
+     * Les deux lignes app_user sont d'abord verrouillées dans l'ordre croissant de leur identifiant,
+     * ce qui évite les interblocages entre transferts croisés.
+     *
+     * @param senderId    identifiant de l'expéditeur
+     * @param receiverId  identifiant du destinataire
+     * @param amount      montant du transfert
+     * @param description description du transfert
+     * @param idempotencyKey clé d'idempotence, ou {@code null}
+     */
+    private void applyTransfer(int senderId, int receiverId, BigDecimal amount, String description, String idempotencyKey) {
+        // Rejeu d'un transfert déjà exécuté : rien à faire
+        if (idempotencyKey != null
+                && !transferJdbcRepository.claimIdempotencyKey(senderId, IdempotencyScope.TRANSFER, idempotencyKey)) {
+            log.info("Transfert déjà exécuté pour la clé d'idempotence {} de l'utilisateur {}", idempotencyKey, senderId);
+            return;
+        }
+
+        List<AppUser> lockedUsers = appUserRepository.findAllByIdsForUpdate(List.of(senderId, receiverId));
+        if (lockedUsers.size() != 2) {
+            throw new IllegalArgumentException("Relation introuvable");
+        }
+
+        // Débit conditionnel + crédit en une seule requête : les deux comptes existent (verrouillés ci-dessus),
+        // une ligne non modifiée est donc celle de l'expéditeur au solde insuffisant (le rollback annule le crédit)
+        if (!transferJdbcRepository.debitAndCredit(senderId, receiverId, amount)) {
+            throw new IllegalArgumentException("Solde insuffisant.");
+        }
+
+        // Enregistre la transaction (les utilisateurs verrouillés sont déjà dans le contexte de persistance)
         AppTransaction tx = new AppTransaction();
-        tx.setSender(sender);
-        tx.setReceiver(receiver);
+        tx.setSender(appUserRepository.getReferenceById(senderId));
+        tx.setReceiver(appUserRepository.getReferenceById(receiverId));
         tx.setAmountTransaction(amount);
-        tx.setDescription(dto.getDescription());
-        tx.setTransactionCreatedAt(LocalDateTime.now());
+        tx.setDescription(description);
+        tx.setTransactionCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS)); // précision de created_at
         appTransactionRepository.save(tx);
+        friendshipJdbcRepository.recordTransfers(List.of(tx)); // contacts récents de l'expéditeur
+        recentHistoryCache.recordAfterCommit(List.of(tx));
+    }
+
+    /**
+     * Applique un paiement groupé dans la transaction courante.
+     * <p>
+     * Comme pour {#applyTransfer}, toutes les lignes app_user concernées sont verrouillées d'abord, dans l'ordre
+     * croissant de leur identifiant : un bénéficiaire d'identifiant inférieur à celui de l'expéditeur ne peut pas
+     * provoquer d'interblocage avec un transfert simple ou un lot du traitement groupé.
+     *
+     * @param senderId  identifiant de l'expéditeur
+     * @param total     somme des montants des lignes
+     * @param credits   montant total à créditer et nombre de transactions par bénéficiaire
+     * @param lines     lignes du paiement groupé
+     * @param friendIds identifiant de chaque bénéficiaire, par nom d'utilisateur
+     * @param idempotencyKey clé d'idempotence, ou {@code null}
+     */
+    private void applyBatchTransfer(int senderId, BigDecimal total, Map<Integer, AccountChange> credits,
+                                    List<TransferFormDTO> lines, Map<String, Integer> friendIds, String idempotencyKey) {
+        if (idempotencyKey != null
+                && !transferJdbcRepository.claimIdempotencyKey(senderId, IdempotencyScope.BATCH, idempotencyKey)) {
+            log.info("Paiement groupé déjà exécuté pour la clé d'idempotence {} de l'utilisateur {}", idempotencyKey, senderId);
+            return;
+        }
+        TreeSet<Integer> accountIds = new TreeSet<>(credits.keySet());
+        accountIds.add(senderId);
+        if (appUserRepository.findAllByIdsForUpdate(accountIds).size() != accountIds.size()) {
+            throw new IllegalArgumentException("Relation introuvable");
+        }
+
+        // Débit conditionnel du total : un seul contrôle de solde
+        if (transferJdbcRepository.debit(senderId, total, lines.size()) == 0) {
+            throw new IllegalArgumentException("Solde insuffisant.");
+        }
+        // Tous les crédits en une seule requête
+        if (transferJdbcRepository.creditAll(credits) != credits.size()) {
+            throw new IllegalArgumentException("Relation introuvable");
+        }
+
+        // Insertions regroupées en lot JDBC (hibernate.jdbc.batch_size)
+        AppUser sender = appUserRepository.getReferenceById(senderId);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS); // précision de created_at
+        List<AppTransaction> transactions = new ArrayList<>(lines.size());
+        for (TransferFormDTO line : lines) {
+            AppTransaction tx = new AppTransaction();
+            tx.setSender(sender);
+            tx.setReceiver(appUserRepository.getReferenceById(friendIds.get(line.getRelation())));
+            tx.setAmountTransaction(line.getMontant());
+            tx.setDescription(line.getDescription());
+            tx.setTransactionCreatedAt(now);
+            transactions.add(tx);
+        }
+        appTransactionRepository.saveAll(transactions);
+        friendshipJdbcRepository.recordTransfers(transactions); // contacts récents de l'expéditeur
+        recentHistoryCache.recordAfterCommit(transactions);
+    }
+
+    /**
+     * Exécute une opération dans une transaction, rejouée si les verrous n'ont pas pu être obtenus à temps
+     * (attente bornée ou interblocage détecté par MySQL), selon la politique {LockRetryPolicy}.
+     *
+     * @param label libellé de l'opération pour les logs
+     * @param work  opération à exécuter dans la transaction
+     */
+    private void executeWithLockRetry(String label, Runnable work) {
+        lockRetryPolicy.execute(label, () -> {
+            transactionTemplate.executeWithoutResult(status -> work.run());
+            return null;
+        });
+    }
+
+    /**
+     * Clé d'idempotence fournie par le client, vérifiée avant tout accès à la base : une clé plus longue
+     * que la colonne serait tronquée par l'INSERT IGNORE et pourrait se confondre avec une autre clé.
+     *
+     * @param key clé saisie (champ caché ou en-tête), éventuellement vide
+     * @return la clé, ou {@code null} si aucune clé n'est fournie
+     * @throws IllegalArgumentException si la clé dépasse {TransferFormDTO#IDEMPOTENCY_KEY_MAX_LENGTH} caractères
+     */
+    private static String idempotencyKey(String key) {
+        if (!StringUtils.hasText(key)) {
+            return null;
+        }
+        if (key.length() > TransferFormDTO.IDEMPOTENCY_KEY_MAX_LENGTH) {
+            throw new IllegalArgumentException("La clé d'idempotence ne peut pas dépasser "
+                    + TransferFormDTO.IDEMPOTENCY_KEY_MAX_LENGTH + " caractères.");
+        }
+        return key;
+    }
+
+    /**
+     * Indique si une opération portant cette clé d'idempotence vient d'être commitée (cache mémoire uniquement).
+     *
+     * @param senderId       identifiant de l'expéditeur
+     * @param scope          type d'opération (transfert simple ou paiement groupé)
+     * @param idempotencyKey clé d'idempotence, ou {@code null}
+     * @return {@code true} si l'opération est un rejeu à ne pas exécuter
+     */
+    private boolean isRecentReplay(int senderId, IdempotencyScope scope, String idempotencyKey) {
+        if (idempotencyKey != null && transferIdempotencyCache.contains(senderId, scope, idempotencyKey)) {
+            log.info("Rejeu ignoré pour la clé d'idempotence {} de l'utilisateur {}", idempotencyKey, senderId);
+            return true;
+        }
+        return false;
+    }
+
+    private void rememberIdempotencyKey(int senderId, IdempotencyScope scope, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            transferIdempotencyCache.remember(senderId, scope, idempotencyKey);
+        }
+    }
+
+    /**
+     * Attend le commit du lot contenant un transfert soumis au traitement groupé.
+     * Les erreurs métier (ex : solde insuffisant) sont relancées telles quelles.
+     *
+     * @param result futur renvoyé par {TransferPipeline#submit}
+     */
+    private void awaitPipeline(CompletableFuture<Void> result) {
+        try {
+            result.get(pipelineAwaitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Échec du transfert", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Le transfert n'a pas été confirmé à temps.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transfert interrompu", e);
+        }
+    }
+
+    /**
+     * Construit l'erreur adaptée lorsque la relation choisie n'est pas un ami de l'expéditeur.
+     * <p>
+     * Cette requête supplémentaire n'est exécutée que sur le chemin d'erreur.
+     *
+     * @param senderId identifiant de l'expéditeur
+     * @param relation nom d'utilisateur saisi comme destinataire
+     * @return l'exception décrivant la cause du refus
+     */
+    private IllegalArgumentException invalidRelation(int senderId, String relation) {
+        return appUserRepository.findByUserName(relation)
+                .map(receiver -> receiver.getUserId() == senderId
+                        ? new IllegalArgumentException("Vous ne pouvez pas vous payer vous-même.")
+                        : new IllegalArgumentException("La relation sélectionnée n'est pas dans votre liste d'amis."))
+                .orElseGet(() -> new IllegalArgumentException("Relation introuvable"));
+    }
+
+    /**
+     * Un côté de l'historique (envoyé ou reçu) lu page par page, par curseur (created_at, id).
+     * Une page incomplète indique la fin : aucune requête supplémentaire n'est faite.
+     */
+    private final class HistorySide {
+
+        private final BiFunction<LocalDateTime, Integer, List<TransferHistoryRow>> nextPage;
+        private List<TransferHistoryRow> page;
+        private int position;
+
+        HistorySide(BiFunction<LocalDateTime, Integer, List<TransferHistoryRow>> nextPage) {
+            this.nextPage = nextPage;
+            this.page = nextPage.apply(EXPORT_START, 0);
+        }
+
+        boolean hasNext() {
+            if (position == page.size() && page.size() == exportPageSize) {
+                TransferHistoryRow last = page.get(page.size() - 1);
+                page = nextPage.apply(last.getCreatedAt(), last.getId());
+                position = 0;
+            }
+            return position < page.size();
+        }
+
+        TransferHistoryRow peek() {
+            return page.get(position);
+        }
+
+        TransferHistoryRow next() {
+            return page.get(position++);
+        }
     }
 }
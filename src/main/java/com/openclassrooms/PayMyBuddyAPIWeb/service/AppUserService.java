@@ -1,9 +1,13 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.service;
 
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.AppUserDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.FriendSuggestionDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.RegisterDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.RelationImportResultDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.RelationImportResultDTO.Outcome;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferFormDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferHistoryDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.UserDirectoryEntryDTO;
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.AuthenticatedUserNotFoundException;
@@ -12,20 +16,39 @@ import com.openclassrooms.PayMyBuddyAPIWeb.exception.UserNotFoundException;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.UsernameAlreadyUsedException;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.FriendshipJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.FriendIdView;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.UserEmailView;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserCache;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Service principal pour la gestion des utilisateurs et des transactions
@@ -36,7 +59,10 @@ import java.util.List;
  *     <li>Créer et mettre à jour un utilisateur</li>
  *     <li>Récupérer l'utilisateur actuellement authentifié</li>
  *     <li>Ajouter un ami à un utilisateur</li>
- *     <li>Récupérer la liste des amis</li>
+ *     <li>Rechercher parmi les amis (par début de nom, en nombre borné)</li>
+ *     <li>Suggérer des amis d'amis et les ajouter</li>
+ *     <li>Importer une liste d'emails en relations</li>
+ *     <li>Rechercher des utilisateurs dans l'annuaire (par partie de nom ou d'email)</li>
  *     <li>Récupérer l'historique des transactions (avec ou sans pagination)</li>
  *     <li>Effectuer un transfert d'argent entre utilisateurs</li>
  * </ul>
@@ -47,6 +73,17 @@ import java.util.List;
 @Service
 public class AppUserService {
 
+    /** Nombre maximal d'emails par import de relations */
+    public static final int MAX_IMPORTED_EMAILS = 1000;
+
+    /** Nombre d'identifiants par requête {@code IN (...)} lors d'un import */
+    private static final int IMPORT_CHUNK_SIZE = 500;
+
+    /** Séparateurs acceptés entre deux emails importés : espaces, retours à la ligne, virgules, points-virgules */
+    private static final Pattern EMAIL_SEPARATORS = Pattern.compile("[\\s,;]+");
+
+    private static final Pattern EMAIL_FORMAT = Pattern.compile("[^@]+@[^@]+\\.[^@]+");
+
     @Autowired
     private AuthenticationService authenticationService;
 
@@ -59,6 +96,21 @@ public class AppUserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private UserAvailabilityIndex userAvailabilityIndex;
+
+    @Autowired
+    private FriendshipJdbcRepository friendshipJdbcRepository;
+
+    @Autowired
+    private FriendGraph friendGraph;
+
+    @Autowired
+    private UserDirectoryIndex userDirectoryIndex;
+
     /**
      * Vérifie que l'email fourni n'existe pas déjà en base.
      *
@@ -86,6 +138,11 @@ public class AppUserService {
     /**
      * Crée un nouvel utilisateur à partir d'un {RegisterDTO}.
      * Le mot de passe est haché et le solde initialisé à zéro.
+     * <p>
+     * L'unicité de l'email et du nom d'utilisateur est garantie par les contraintes de la table app_user :
+     * l'utilisateur est inséré directement (une seule requête), et une violation de contrainte est traduite
+     * en exception métier selon la contrainte en cause. Deux inscriptions simultanées avec le même email
+     * ne peuvent donc pas réussir toutes les deux.
      *
      * @param registerDTO DTO contenant les informations de l'utilisateur
      * @throws EmailAlreadyUsedException si l'email existe déjà
@@ -93,9 +150,6 @@ public class AppUserService {
      */
     public void createUser(RegisterDTO registerDTO) {
 
-        validateEmailUnique(registerDTO.getEmail());
-        validateUserNameUnique(registerDTO.getUserName());
-
         // Sauvegarder le nouvel utilisateur après hachage du mot de passe
         AppUser newUser = new AppUser();
         newUser.setUserName(registerDTO.getUserName());
@@ -103,44 +157,124 @@ public class AppUserService {
         newUser.setPassword(passwordEncoder.encode(registerDTO.getPassword()));
         newUser.setBalance(BigDecimal.ZERO); // Initialisation solde à zéro pour un nouvel utilisateur
 
-        appUserRepository.save(newUser);
+        try {
+            appUserRepository.saveAndFlush(newUser); // flush : la violation de contrainte est levée ici
+            userDirectoryIndex.recordAfterCommit(newUser.getUserId(), newUser.getUserName(), newUser.getEmail());
+        } catch (DataIntegrityViolationException e) {
+            throw translateUniqueViolation(e);
+        } finally {
+            // créé ici ou déjà pris (ex : par une autre instance) : dans les deux cas, à signaler comme pris
+            userAvailabilityIndex.register(registerDTO.getUserName(), registerDTO.getEmail());
+        }
+    }
 
+    /**
+     * Traduit la violation d'une contrainte d'unicité de app_user en exception métier.
+     *
+     * @param e exception levée par l'insertion
+     * @return l'exception métier correspondant au champ en doublon
+     * @throws DataIntegrityViolationException si la violation ne concerne ni l'email ni le nom d'utilisateur
+     */
+    private RuntimeException translateUniqueViolation(DataIntegrityViolationException e) {
+        String constraint = e.getCause() instanceof ConstraintViolationException violation
+                && violation.getConstraintName() != null
+                ? violation.getConstraintName()
+                : String.valueOf(e.getMostSpecificCause().getMessage());
+        // MySQL : "Duplicate entry '...' for key 'app_user.email_UNIQUE'"
+        if (constraint.contains(AppUser.EMAIL_UNIQUE)) {
+            return new EmailAlreadyUsedException("Email déjà utilisé !");
+        }
+        if (constraint.contains(AppUser.USERNAME_UNIQUE)) {
+            return new UsernameAlreadyUsedException("Nom d'utilisateur déjà utilisé !");
+        }
+        return e;
     }
 
     /**
-     * Met à jour un utilisateur existant.
+     * Met à jour un utilisateur existant (nom d'utilisateur, email, mot de passe).
      * Vérifie que l'email et le nom d'utilisateur restent uniques si modifiés.
+     * <p>
+     * Seuls les champs modifiés sont écrits : l'entité est annotée {@code @DynamicUpdate}, la requête UPDATE
+     * ne contient donc que les colonnes changées (aucune requête si rien n'a changé). Le mot de passe n'est haché
+     * que si un nouveau mot de passe est fourni. Le solde n'est jamais modifié ici : il n'évolue que par les transferts.
      *
      * @param userId l'identifiant de l'utilisateur à mettre à jour
-     * @param appUserDTO DTO contenant les nouvelles valeurs
+     * @param appUserDTO DTO contenant les nouvelles valeurs ; {@code password} contient le nouveau mot de passe en clair,
+     *                   ou {@code null} / vide pour conserver le mot de passe actuel ; {@code balance} est ignoré
      * @throws UserNotFoundException si l'utilisateur n'existe pas
      * @throws EmailAlreadyUsedException si le nouvel email est déjà utilisé
      * @throws UsernameAlreadyUsedException si le nouveau nom d'utilisateur est déjà utilisé
      */
+    @Transactional
     public void updateUser(int userId, AppUserDTO appUserDTO) {
         // 1- Récupérer l'utilisateur existant
         AppUser existingUser = appUserRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException("Utilisateur introuvable"));
+        String previousEmail = existingUser.getEmail();
+        boolean emailChanged = !existingUser.getEmail().equals(appUserDTO.getEmail());
+        boolean userNameChanged = !existingUser.getUserName().equals(appUserDTO.getUserName());
+        boolean passwordChanged = appUserDTO.getPassword() != null && !appUserDTO.getPassword().isEmpty();
 
         // 2- Vérifier si l'email souhaité est déjà pris (On passe l'email du DTO, donc ce que l'utilisateur VEUT mettre)
         // On vérifie l'email seulement si l'utilisateur veut le changer
-        if (!existingUser.getEmail().equals(appUserDTO.getEmail())) {
+        if (emailChanged) {
             validateEmailUnique(appUserDTO.getEmail());
         }
 
         // 2-BIS Vérifier le 'username' uniquement si l'utilisateur veut le changer
-        if (!existingUser.getUserName().equals(appUserDTO.getUserName())) {
+        if (userNameChanged) {
             validateUserNameUnique(appUserDTO.getUserName());
         }
 
-        // 3- Mettre à jour les champs
-        existingUser.setUserName(appUserDTO.getUserName());
-        existingUser.setEmail(appUserDTO.getEmail());
-        existingUser.setPassword(passwordEncoder.encode(appUserDTO.getPassword()));
-        existingUser.setBalance(appUserDTO.getBalance());
+        if (!emailChanged && !userNameChanged && !passwordChanged) {
+            return; // rien à écrire
+        }
+
+        // 3- Mettre à jour uniquement les champs modifiés (hachage BCrypt seulement pour un nouveau mot de passe)
+        if (userNameChanged) {
+            existingUser.setUserName(appUserDTO.getUserName());
+        }
+        if (emailChanged) {
+            existingUser.setEmail(appUserDTO.getEmail());
+        }
+        if (passwordChanged) {
+            existingUser.setPassword(passwordEncoder.encode(appUserDTO.getPassword()));
+        }
+
+        // 4- Sauvegarder (UPDATE des seules colonnes modifiées)
+        appUserRepository.save(existingUser);
 
-        // 4- Sauvegarder le DTO
-        convertToDTO(appUserRepository.save(existingUser));
+        // 5- Mot de passe, nom ou email modifié : l'utilisateur sera relu en base à sa prochaine connexion
+        evictFromUserCacheAfterCommit(emailChanged ? List.of(previousEmail, existingUser.getEmail()) : List.of(previousEmail));
+
+        // 6- Nouveau nom ou email désormais pris (les anciennes valeurs restent vérifiées en base)
+        userAvailabilityIndex.register(userNameChanged ? existingUser.getUserName() : null,
+                emailChanged ? existingUser.getEmail() : null);
+
+        // 7- Annuaire de recherche : nouvelles valeurs indexées après le commit
+        if (userNameChanged || emailChanged) {
+            userDirectoryIndex.recordAfterCommit(userId, existingUser.getUserName(), existingUser.getEmail());
+        }
+    }
+
+    /**
+     * Retire des utilisateurs du cache de connexion après le commit de la transaction courante
+     * (immédiatement si aucune transaction n'est active). Retirés avant le commit, ils pourraient être
+     * rechargés entre-temps avec l'ancienne ligne (ancien mot de passe) et rester en cache jusqu'à expiration.
+     *
+     * @param emails emails (identifiants de connexion) à retirer du cache
+     */
+    private void evictFromUserCacheAfterCommit(List<String> emails) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            emails.forEach(userCache::removeUserFromCache);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                emails.forEach(userCache::removeUserFromCache);
+            }
+        });
     }
 
     /**
@@ -156,41 +290,176 @@ public class AppUserService {
 
     /**
      * Ajoute un utilisateur comme ami en utilisant son email.
+     * <p>
+     * Seul l'identifiant de l'ami est lu, puis la relation est insérée directement dans user_friendship :
+     * ni l'utilisateur courant ni sa liste d'amis ne sont chargés, quel que soit son nombre d'amis.
      *
      * @param friendEmail email de l'ami à ajouter
      * @throws UserNotFoundException si l'utilisateur à ajouter n'existe pas
      * @throws IllegalArgumentException si l'utilisateur tente de s'ajouter lui-même
      * @throws IllegalStateException si la relation existe déjà
      */
-
     public void addFriendByEmail(String friendEmail) {
-        // Étape 1 : Récupérer l'utilisateur courant connecté avec ses amis
-        AppUser currentUser = appUserRepository.findByEmailWithFriends(authenticationService.getAuthenticatedUserEntity().getEmail())
-                .orElseThrow(() -> new AuthenticatedUserNotFoundException("Utilisateur connecté introuvable"));
+        // Étape 1 : Identifiant de l'utilisateur courant (lu dans le principal, sans requête)
+        int currentUserId = authenticationService.getAuthenticatedUserId();
 
-
-        // Étape 2 : Vérifier si l'ami existe en BDD
-        AppUser friend = appUserRepository.findByEmail(friendEmail)
+        // Étape 2 : Vérifier si l'ami existe en BDD (identifiant seulement)
+        int friendId = appUserRepository.findUserIdByEmail(friendEmail)
                 .orElseThrow(() -> new UserNotFoundException("Aucun utilisateur-ami trouvé avec cet email !"));
 
         // Étape 3 : Garde-fou : Empêcher de s’ajouter soi-même
-        if (currentUser.getEmail().equals(friend.getEmail())) {
+        if (currentUserId == friendId) {
             throw new IllegalArgumentException("Vous ne pouvez pas vous ajouter vous-même en ami !");
         }
 
-        // Étape 4 : Vérifier si la relation existe déjà
-        if (currentUser.getFriends().contains(friend)) {
-            throw new IllegalStateException("Cet utilisateur est déjà dans la liste de vos amis !");
+        // Étape 4 : Ajouter la relation
+        addFriend(currentUserId, friendId);
+    }
+
+    /**
+     * Ajoute en relations tous les utilisateurs correspondant à une liste d'emails, en une seule transaction.
+     * <p>
+     * Quel que soit le nombre d'emails (au plus {MAX_IMPORTED_EMAILS}), par tranche de {IMPORT_CHUNK_SIZE} :
+     * une requête {@code email IN (...)} pour trouver les utilisateurs, une lecture de user_friendship pour écarter
+     * les relations existantes, puis un seul INSERT groupé pour toutes les nouvelles relations.
+     * Les doublons (sans tenir compte de la casse) ne sont traités qu'une fois.
+     *
+     * @param text emails séparés par des espaces, retours à la ligne, virgules ou points-virgules
+     * @return le résultat de chaque email distinct, dans l'ordre de saisie
+     * @throws IllegalArgumentException si la liste est vide ou dépasse {MAX_IMPORTED_EMAILS} emails
+     */
+    @Transactional
+    public List<RelationImportResultDTO> importFriendsByEmail(String text) {
+        // Emails distincts, dans l'ordre de saisie (clé : email en minuscules)
+        Map<String, String> emails = new LinkedHashMap<>();
+        for (String email : EMAIL_SEPARATORS.split(text == null ? "" : text.trim())) {
+            if (!email.isEmpty()) {
+                emails.putIfAbsent(email.toLowerCase(Locale.ROOT), email);
+            }
+        }
+        if (emails.isEmpty()) {
+            throw new IllegalArgumentException("Saisissez au moins une adresse email !");
+        }
+        if (emails.size() > MAX_IMPORTED_EMAILS) {
+            throw new IllegalArgumentException("Vous pouvez importer au plus " + MAX_IMPORTED_EMAILS + " adresses email à la fois !");
+        }
+        int currentUserId = authenticationService.getAuthenticatedUserId();
+
+        // 1- Utilisateurs correspondants : une requête par tranche (comparaison insensible à la casse comme en base)
+        List<String> wellFormed = emails.values().stream().filter(email -> EMAIL_FORMAT.matcher(email).matches()).toList();
+        Map<String, Integer> userIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (List<String> chunk : chunks(wellFormed)) {
+            for (UserEmailView user : appUserRepository.findUserIdsByEmails(chunk)) {
+                userIds.put(user.getEmail(), user.getUserId());
+            }
+        }
+
+        // 2- Relations déjà présentes : une lecture de user_friendship par tranche
+        Set<Integer> candidates = new LinkedHashSet<>(userIds.values());
+        candidates.remove(currentUserId);
+        Set<Integer> existing = new HashSet<>();
+        for (List<Integer> chunk : chunks(new ArrayList<>(candidates))) {
+            existing.addAll(friendshipJdbcRepository.findFriendIds(currentUserId, chunk));
+        }
+
+        // 3- Nouvelles relations : un seul INSERT groupé, puis le graphe des suggestions après le commit
+        candidates.removeAll(existing);
+        if (!candidates.isEmpty()) {
+            friendshipJdbcRepository.addFriends(currentUserId, candidates);
+            candidates.forEach(friendId -> friendGraph.recordAfterCommit(currentUserId, friendId));
+        }
+
+        return emails.values().stream().map(email -> {
+            Integer userId = userIds.get(email);
+            Outcome outcome;
+            if (!EMAIL_FORMAT.matcher(email).matches()) {
+                outcome = Outcome.INVALID;
+            } else if (userId == null) {
+                outcome = Outcome.NOT_FOUND;
+            } else if (userId == currentUserId) {
+                outcome = Outcome.SELF;
+            } else if (existing.contains(userId)) {
+                outcome = Outcome.ALREADY_FRIEND;
+            } else {
+                outcome = Outcome.ADDED;
+            }
+            return new RelationImportResultDTO(email, outcome);
+        }).toList();
+    }
+
+    private static <T> List<List<T>> chunks(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += IMPORT_CHUNK_SIZE) {
+            chunks.add(values.subList(i, Math.min(i + IMPORT_CHUNK_SIZE, values.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Ajoute à l'utilisateur connecté un ami parmi ses suggestions (ami d'un de ses amis).
+     *
+     * @param friendId identifiant de l'utilisateur suggéré
+     * @throws IllegalArgumentException si l'utilisateur ne fait pas partie des suggestions
+     * @throws IllegalStateException si la relation existe déjà
+     */
+    public void addSuggestedFriend(int friendId) {
+        int currentUserId = authenticationService.getAuthenticatedUserId();
+        // seul un ami d'ami peut être ajouté par son identifiant (l'ajout libre se fait par email)
+        if (!friendGraph.isSuggestion(currentUserId, friendId)) {
+            throw new IllegalArgumentException("Cet utilisateur ne fait pas partie de vos suggestions !");
+        }
+        addFriend(currentUserId, friendId);
+    }
+
+    /**
+     * Suggère à l'utilisateur connecté des amis de ses amis, par nombre décroissant d'amis en commun.
+     * Calculé sur le graphe des relations en mémoire ({FriendGraph}) ; seuls les noms sont lus en base.
+     *
+     * @param limit nombre maximal de suggestions
+     * @return liste des {FriendSuggestionDTO}, la plus pertinente en premier
+     */
+    public List<FriendSuggestionDTO> getFriendSuggestionsForCurrentUser(int limit) {
+        List<FriendGraph.Suggestion> suggestions = friendGraph.suggest(authenticationService.getAuthenticatedUserId(), limit);
+        if (suggestions.isEmpty()) {
+            return List.of();
         }
+        Map<Integer, String> userNames = appUserRepository.findUserNamesByIds(
+                        suggestions.stream().map(FriendGraph.Suggestion::userId).toList()).stream()
+                .collect(Collectors.toMap(FriendIdView::getUserId, FriendIdView::getUserName));
+        // un utilisateur supprimé depuis le chargement du graphe n'est pas suggéré
+        return suggestions.stream()
+                .filter(suggestion -> userNames.containsKey(suggestion.userId()))
+                .map(suggestion -> new FriendSuggestionDTO(suggestion.userId(),
+                        userNames.get(suggestion.userId()), suggestion.mutualFriends()))
+                .toList();
+    }
 
-        // Étape 5 : Ajouter la relation
-        currentUser.addFriend(friend);
+    /**
+     * Recherche des utilisateurs dont le nom ou l'email contient le texte saisi (recherche pendant la saisie),
+     * les noms commençant par le texte en premier. L'utilisateur connecté est exclu.
+     * Calculé sur l'annuaire en mémoire ({UserDirectoryIndex}), sans requête.
+     *
+     * @param text  texte saisi (au moins {UserDirectoryIndex#MIN_QUERY_LENGTH} caractères)
+     * @param limit nombre maximal de résultats
+     * @return liste des {UserDirectoryEntryDTO}, vide si le texte est trop court
+     */
+    public List<UserDirectoryEntryDTO> searchDirectory(String text, int limit) {
+        return userDirectoryIndex.search(text, authenticationService.getAuthenticatedUserId(), limit).stream()
+                .map(match -> new UserDirectoryEntryDTO(match.userId(), match.userName(), match.email()))
+                .toList();
+    }
 
-        // Étape 6 : Sauvegarder l'utilisateur courant pour persister la relation dans la table de jointure
-        // Comme la relation est unidirectionnelle, il suffit de sauvegarder currentUser.
-        // La table de jointure sera mise à jour automatiquement.
-        // Si la relation était bidirectionnelle, il faudrait aussi sauvegarder friend ou utiliser cascade pour propager.
-        appUserRepository.save(currentUser);
+    /**
+     * Ajoute la relation dans la table de jointure (0 ligne insérée si elle existe déjà),
+     * puis dans le graphe des suggestions après le commit.
+     *
+     * @throws IllegalStateException si la relation existe déjà
+     */
+    private void addFriend(int currentUserId, int friendId) {
+        if (!friendshipJdbcRepository.addFriend(currentUserId, friendId)) {
+            throw new IllegalStateException("Cet utilisateur est déjà dans la liste de vos amis !");
+        }
+        friendGraph.recordAfterCommit(currentUserId, friendId);
     }
 
     /**
@@ -211,16 +480,25 @@ public class AppUserService {
     }
 
     /**
-     * Récupère la liste des amis de l'utilisateur connecté.
+     * Recherche les amis de l'utilisateur connecté dont le nom commence par {@code prefix}, par ordre alphabétique.
+     * <p>
+     * Seuls l'identifiant et le nom de chaque ami sont lus, au plus {@code limit} : sans préfixe, ce sont
+     * les contacts récents (du plus récemment payé au plus ancien, voir {AppUserRepository#findRecentFriends}).
+     * Les caractères spéciaux de LIKE ({@code %}, {@code _}) sont cherchés tels quels.
      *
-     * @return liste des {AppUser} amis
+     * @param prefix début du nom recherché (null ou vide pour les contacts récents)
+     * @param limit  nombre maximal d'amis renvoyés
+     * @return liste des {FriendIdView} trouvés
      */
-    public List<AppUser> getFriendsForCurrentUser() {
-        AppUser currentUser = authenticationService.getAuthenticatedUserEntity();
-
-        // Convertir le Set en List pour l'utiliser dans Thymeleaf
-        return currentUser.getFriends().stream().toList();
+    public List<FriendIdView> searchFriendsForCurrentUser(String prefix, int limit) {
+        int userId = authenticationService.getAuthenticatedUserId();
+        if (prefix == null || prefix.isBlank()) {
+            return appUserRepository.findRecentFriends(userId, limit);
+        }
+        String pattern = prefix.trim()
+                .replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+        return appUserRepository.findFriendsByUserNamePrefix(userId, pattern + "%", Limit.of(limit));
     }
-
-
 }
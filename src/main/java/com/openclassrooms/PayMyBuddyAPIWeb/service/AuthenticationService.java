@@ -1,5 +1,6 @@
 package com.openclassrooms.PayMyBuddyAPIWeb.service;
 
+import com.openclassrooms.PayMyBuddyAPIWeb.config.AppUserPrincipal;
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
 import com.openclassrooms.PayMyBuddyAPIWeb.exception.AuthenticatedUserNotFoundException;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
@@ -7,10 +8,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import java.util.function.Supplier;
+
+/**
+ * Résolution de l'utilisateur actuellement authentifié.
+ * <p>
+ * L'identifiant est lu directement dans le principal ({AppUserPrincipal}) créé à la connexion :
+ * aucune requête n'est nécessaire. Pour un autre type de principal (ex : {@code @WithMockUser} dans les tests),
+ * l'utilisateur est recherché par email.
+ * <p>
+ * Dans une requête HTTP, l'identifiant et l'entité sont résolus une seule fois puis mémorisés
+ * dans les attributs de la requête : les services et contrôleurs appelés pendant la même requête les réutilisent.
+ */
 @Service
 public class AuthenticationService {
 
+    private static final String USER_ID_ATTRIBUTE = AuthenticationService.class.getName() + ".userId";
+
+    private static final String USER_ENTITY_ATTRIBUTE = AuthenticationService.class.getName() + ".userEntity";
+
     @Autowired
     private AppUserRepository appUserRepository;
 
@@ -22,14 +41,57 @@ public class AuthenticationService {
      */
     public AppUser getAuthenticatedUserEntity() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String email = auth.getName();
-        return appUserRepository.findByEmail(email)
-                .orElseThrow(() -> new AuthenticatedUserNotFoundException(
-                        "Utilisateur connecté introuvable avec l'email : " + email
-                ));
+        return memoized(USER_ENTITY_ATTRIBUTE, auth, () -> {
+            if (auth.getPrincipal() instanceof AppUserPrincipal principal) {
+                return appUserRepository.findById(principal.getUserId())
+                        .orElseThrow(() -> notFound(auth));
+            }
+            return appUserRepository.findByEmail(auth.getName())
+                    .orElseThrow(() -> notFound(auth));
+        });
     }
-}
 
+    /**
+     * Récupère uniquement l'identifiant de l'utilisateur actuellement authentifié,
+     * sans charger l'entité complète.
+     *
+     * @return identifiant de l'utilisateur connecté
+     * @throws AuthenticatedUserNotFoundException si l'utilisateur connecté n'existe pas
+     */
+    public int getAuthenticatedUserId() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth.getPrincipal() instanceof AppUserPrincipal principal) {
+            return principal.getUserId();
+        }
+        return memoized(USER_ID_ATTRIBUTE, auth, () -> appUserRepository.findUserIdByEmail(auth.getName())
+                .orElseThrow(() -> notFound(auth)));
+    }
 
+    /**
+     * Valeur mémorisée pour la requête HTTP courante (et pour l'utilisateur authentifié courant),
+     * calculée au premier appel. Hors requête HTTP, la valeur est recalculée à chaque appel.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T memoized(String attribute, Authentication auth, Supplier<T> resolver) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null) {
+            return resolver.get();
+        }
+        if (request.getAttribute(attribute, RequestAttributes.SCOPE_REQUEST) instanceof Memo memo
+                && memo.authentication() == auth) {
+            return (T) memo.value();
+        }
+        T value = resolver.get();
+        request.setAttribute(attribute, new Memo(auth, value), RequestAttributes.SCOPE_REQUEST);
+        return value;
+    }
 
+    private static AuthenticatedUserNotFoundException notFound(Authentication auth) {
+        return new AuthenticatedUserNotFoundException(
+                "Utilisateur connecté introuvable avec l'email : " + auth.getName());
+    }
 
+    /** Valeur mémorisée, liée à l'authentification qui l'a produite */
+    private record Memo(Authentication authentication, Object value) {
+    }
+}
@@ -0,0 +1,440 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Graphe des relations (user_friendship) en mémoire, pour les suggestions "Vous connaissez peut-être".
+ * <p>
+ * Les relations sont rangées au format CSR (compressed sparse row) dans deux tableaux d'entiers :
+ * {@code offsets[u] .. offsets[u + 1]} délimite, dans {@code targets}, les amis de l'utilisateur {@code u}, triés.
+ * Une relation occupe 4 octets : plusieurs millions de relations tiennent en quelques dizaines de Mo.
+ * Le graphe est chargé au démarrage en parcourant user_friendship en flux ; les relations ajoutées ensuite
+ * ({#recordAfterCommit}) sont gardées à part, puis fusionnées dans de nouveaux tableaux au-delà de
+ * {@code paymybuddy.relation.graph.compaction-threshold} relations. Une reconstruction périodique depuis la base
+ * est possible ({@code paymybuddy.relation.graph.rebuild-cron}).
+ * </p>
+ * <p>
+ * Les suggestions ({#suggest}) sont les amis des amis, classés par nombre d'amis en commun. Le comptage utilise
+ * une table à adressage ouvert propre à la requête, dimensionnée par le nombre de candidats rencontrés
+ * (somme des degrés des amis) : la mémoire utilisée dépend du voisinage de l'utilisateur, pas du nombre
+ * d'utilisateurs ni du nombre de threads, et rien n'est conservé entre deux requêtes.
+ * </p>
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class FriendGraph {
+
+    private static final String ALL_FRIENDSHIPS_SQL =
+            "SELECT user_id, friend_id FROM user_friendship ORDER BY user_id, friend_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int compactionThreshold;
+
+    /** Protège le couple (csr, added) : les lectures se font sous le verrou de lecture */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private Csr csr = Csr.EMPTY;
+
+    /** Relations ajoutées depuis la construction de {@code csr} : amis triés, par utilisateur */
+    private final Map<Integer, int[]> added = new HashMap<>();
+
+    private int addedCount;
+
+    private int maxUserId;
+
+    /**
+     * @param jdbcTemplate        accès JDBC pour le parcours de user_friendship
+     * @param meterRegistry       registre des métriques
+     * @param compactionThreshold nombre de relations ajoutées au-delà duquel elles sont fusionnées dans les tableaux
+     */
+    public FriendGraph(JdbcTemplate jdbcTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${paymybuddy.relation.graph.compaction-threshold:100000}") int compactionThreshold) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compactionThreshold = compactionThreshold;
+        Gauge.builder("paymybuddy.relation.graph.edges", this, FriendGraph::edgeCount)
+                .description("Relations chargées dans le graphe des suggestions").register(meterRegistry);
+    }
+
+    /**
+     * (Re)construit le graphe en parcourant user_friendship dans l'ordre de sa clé primaire, ligne par ligne.
+     * Les relations ajoutées pendant le parcours sont conservées.
+     */
+    @PostConstruct
+    @Scheduled(cron = "${paymybuddy.relation.graph.rebuild-cron:-}")
+    public void rebuild() {
+        CsrBuilder builder = new CsrBuilder();
+        // Integer.MIN_VALUE : le pilote MySQL transmet les lignes une à une au lieu de charger toute la table
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        streaming.query(ALL_FRIENDSHIPS_SQL, rs -> {
+            builder.add(rs.getInt(1), rs.getInt(2));
+        });
+        Csr loaded = builder.build();
+        install(loaded);
+        log.info("Graphe des relations construit ({} relations)", loaded.edgeCount());
+    }
+
+    /**
+     * Reporte une relation dans le graphe après le commit de la transaction courante
+     * (immédiatement si aucune transaction n'est active). Un rollback n'a aucun effet sur le graphe.
+     *
+     * @param userId   identifiant du propriétaire de la liste d'amis
+     * @param friendId identifiant de l'ami ajouté
+     */
+    public void recordAfterCommit(int userId, int friendId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(userId, friendId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(userId, friendId);
+            }
+        });
+    }
+
+    /**
+     * Suggère des amis d'amis, par nombre décroissant d'amis en commun (puis par identifiant croissant).
+     * L'utilisateur lui-même et ses amis actuels sont exclus.
+     *
+     * @param userId identifiant de l'utilisateur
+     * @param limit  nombre maximal de suggestions
+     * @return les suggestions, au plus {@code limit}
+     */
+    public List<Suggestion> suggest(int userId, int limit) {
+        lock.readLock().lock();
+        try {
+            // Au plus : l'utilisateur, ses amis et les amis de ses amis, sans dépasser le nombre d'utilisateurs
+            long[] visits = {1L + degree(userId)};
+            forEachFriend(userId, friend -> visits[0] += degree(friend));
+            CandidateCounts counts = new CandidateCounts((int) Math.min(visits[0], maxUserId + 2L));
+
+            // Exclus : l'utilisateur et ses amis
+            counts.exclude(userId);
+            forEachFriend(userId, counts::exclude);
+
+            // Deux sauts : chaque ami d'un ami compte un ami en commun
+            forEachFriend(userId, friend -> forEachFriend(friend, counts::increment));
+            return counts.top(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Indique si {@code candidateId} est un ami d'un ami de {@code userId} (sans être déjà son ami, ni lui-même).
+     *
+     * @param userId      identifiant de l'utilisateur
+     * @param candidateId identifiant de l'utilisateur suggéré
+     * @return {@code true} si {@code candidateId} peut être suggéré à {@code userId}
+     */
+    public boolean isSuggestion(int userId, int candidateId) {
+        lock.readLock().lock();
+        try {
+            if (userId == candidateId || contains(userId, candidateId)) {
+                return false;
+            }
+            boolean[] found = {false};
+            forEachFriend(userId, friend -> found[0] |= contains(friend, candidateId));
+            return found[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return nombre de relations dans le graphe */
+    public long edgeCount() {
+        lock.readLock().lock();
+        try {
+            return csr.edgeCount() + addedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(int userId, int friendId) {
+        boolean compactionDue;
+        lock.writeLock().lock();
+        try {
+            if (contains(userId, friendId)) {
+                return;
+            }
+            int[] friends = added.getOrDefault(userId, new int[0]);
+            int position = -Arrays.binarySearch(friends, friendId) - 1;
+            int[] updated = new int[friends.length + 1];
+            System.arraycopy(friends, 0, updated, 0, position);
+            updated[position] = friendId;
+            System.arraycopy(friends, position, updated, position + 1, friends.length - position);
+            added.put(userId, updated);
+            addedCount++;
+            maxUserId = Math.max(maxUserId, Math.max(userId, friendId));
+            compactionDue = addedCount > compactionThreshold;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (compactionDue && compacting.compareAndSet(false, true)) {
+            try {
+                compact();
+            } finally {
+                compacting.set(false);
+            }
+        }
+    }
+
+    /** Fusionne les relations ajoutées dans de nouveaux tableaux, construits hors verrou d'écriture */
+    private void compact() {
+        CsrBuilder builder = new CsrBuilder();
+        lock.readLock().lock();
+        try {
+            for (int user = 0; user <= maxUserId; user++) {
+                int u = user;
+                int[] extra = added.get(user);
+                if (extra == null) {
+                    csr.forEachFriend(user, friend -> builder.add(u, friend));
+                    continue;
+                }
+                // CsrBuilder attend les amis triés : liste des tableaux + relations ajoutées, triée
+                int[] friends = new int[csr.degree(user) + extra.length];
+                int[] size = {0};
+                csr.forEachFriend(user, friend -> friends[size[0]++] = friend);
+                System.arraycopy(extra, 0, friends, size[0], extra.length);
+                Arrays.sort(friends);
+                for (int friend : friends) {
+                    builder.add(user, friend);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        install(builder.build());
+    }
+
+    /**
+     * Remplace les tableaux ; les relations ajoutées déjà présentes dans les nouveaux tableaux sont retirées
+     * de {@code added}, les autres (ajoutées pendant la construction) sont conservées.
+     */
+    private void install(Csr next) {
+        lock.writeLock().lock();
+        try {
+            csr = next;
+            maxUserId = Math.max(maxUserId, next.maxUserId());
+            addedCount = 0;
+            added.replaceAll((user, friends) -> Arrays.stream(friends)
+                    .filter(friend -> !next.contains(user, friend))
+                    .toArray());
+            added.values().removeIf(friends -> friends.length == 0);
+            added.values().forEach(friends -> addedCount += friends.length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean contains(int userId, int friendId) {
+        if (csr.contains(userId, friendId)) {
+            return true;
+        }
+        int[] friends = added.get(userId);
+        return friends != null && Arrays.binarySearch(friends, friendId) >= 0;
+    }
+
+    private int degree(int userId) {
+        int[] friends = added.get(userId);
+        return csr.degree(userId) + (friends == null ? 0 : friends.length);
+    }
+
+    private void forEachFriend(int userId, IntConsumer action) {
+        csr.forEachFriend(userId, action);
+        int[] friends = added.get(userId);
+        if (friends != null) {
+            for (int friend : friends) {
+                action.accept(friend);
+            }
+        }
+    }
+
+    /**
+     * Suggestion d'ami.
+     *
+     * @param userId        identifiant de l'utilisateur suggéré
+     * @param mutualFriends nombre d'amis en commun
+     */
+    public record Suggestion(int userId, int mutualFriends) {
+    }
+
+    /**
+     * Relations au format CSR (immuable) : amis de {@code u} = {@code targets[offsets[u] .. offsets[u + 1]]}, triés.
+     */
+    private record Csr(int[] offsets, int[] targets) {
+
+        static final Csr EMPTY = new Csr(new int[1], new int[0]);
+
+        int maxUserId() {
+            return offsets.length - 2;
+        }
+
+        long edgeCount() {
+            return offsets[offsets.length - 1];
+        }
+
+        boolean contains(int userId, int friendId) {
+            if (userId < 0 || userId + 1 >= offsets.length) {
+                return false;
+            }
+            return Arrays.binarySearch(targets, offsets[userId], offsets[userId + 1], friendId) >= 0;
+        }
+
+        int degree(int userId) {
+            return userId < 0 || userId + 1 >= offsets.length ? 0 : offsets[userId + 1] - offsets[userId];
+        }
+
+        void forEachFriend(int userId, IntConsumer action) {
+            if (userId < 0 || userId + 1 >= offsets.length) {
+                return;
+            }
+            for (int i = offsets[userId], end = offsets[userId + 1]; i < end; i++) {
+                action.accept(targets[i]);
+            }
+        }
+    }
+
+    /**
+     * Construction d'un {Csr} à partir de relations reçues dans l'ordre (user_id, friend_id) croissant.
+     */
+    private static final class CsrBuilder {
+
+        private int[] degrees = new int[1024];
+        private int[] targets = new int[1024];
+        private int size;
+        private int maxUserId = -1;
+
+        void add(int userId, int friendId) {
+            if (userId >= degrees.length) {
+                degrees = Arrays.copyOf(degrees, Math.max(userId + 1, degrees.length * 2));
+            }
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+            }
+            degrees[userId]++;
+            targets[size++] = friendId;
+            maxUserId = Math.max(maxUserId, Math.max(userId, friendId));
+        }
+
+        Csr build() {
+            int[] offsets = new int[maxUserId + 2];
+            for (int user = 0; user <= maxUserId; user++) {
+                offsets[user + 1] = offsets[user] + (user < degrees.length ? degrees[user] : 0);
+            }
+            return new Csr(offsets, Arrays.copyOf(targets, size));
+        }
+    }
+
+    /**
+     * Nombre d'amis en commun par candidat, dans une table à adressage ouvert (sondage linéaire)
+     * dimensionnée pour au plus {@code expected} identifiants distincts. Les utilisateurs exclus
+     * (l'utilisateur et ses amis) y sont marqués par {@code EXCLUDED}.
+     */
+    private static final class CandidateCounts {
+
+        private static final int EMPTY = -1;
+        private static final int EXCLUDED = -1;
+
+        private final int[] keys;
+        private final int[] counts;
+        private final int mask;
+        private final int shift;
+
+        CandidateCounts(int expected) {
+            // taux de remplissage maximal de 1/2
+            int capacity = Integer.highestOneBit(Math.min(Math.max(8, expected), 1 << 29) * 2 - 1) << 1;
+            keys = new int[capacity];
+            counts = new int[capacity];
+            mask = capacity - 1;
+            shift = Integer.numberOfLeadingZeros(capacity) + 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        void exclude(int userId) {
+            int slot = slot(userId);
+            keys[slot] = userId;
+            counts[slot] = EXCLUDED;
+        }
+
+        void increment(int candidate) {
+            int slot = slot(candidate);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = candidate;
+            }
+            if (counts[slot] != EXCLUDED) {
+                counts[slot]++;
+            }
+        }
+
+        /** Case de l'identifiant, ou première case vide de sa séquence de sondage */
+        private int slot(int userId) {
+            int slot = (userId * 0x9E3779B9) >>> shift; // bits de poids fort du produit (hachage de Fibonacci)
+            while (keys[slot] != EMPTY && keys[slot] != userId) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /** Les {@code limit} meilleurs candidats, par insertion dans un petit tableau trié */
+        List<Suggestion> top(int limit) {
+            int[] bestIds = new int[limit];
+            int[] bestCounts = new int[limit];
+            int size = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                int id = keys[slot];
+                int count = counts[slot];
+                if (id == EMPTY || count == EXCLUDED) {
+                    continue;
+                }
+                int position = size;
+                while (position > 0 && (bestCounts[position - 1] < count
+                        || (bestCounts[position - 1] == count && bestIds[position - 1] > id))) {
+                    position--;
+                }
+                if (position >= limit) {
+                    continue;
+                }
+                int moved = Math.min(size, limit - 1) - position;
+                System.arraycopy(bestIds, position, bestIds, position + 1, moved);
+                System.arraycopy(bestCounts, position, bestCounts, position + 1, moved);
+                bestIds[position] = id;
+                bestCounts[position] = count;
+                size = Math.min(size + 1, limit);
+            }
+            List<Suggestion> result = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                result.add(new Suggestion(bestIds[i], bestCounts[i]));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position dans l'historique des transactions, pour la pagination par curseur (keyset).
+ * <p>
+ * L'historique est trié par (created_at, id) décroissants. Un curseur désigne la dernière transaction
+ * affichée et le sens de lecture : {@code older = true} pour la page suivante (transactions plus anciennes),
+ * {@code false} pour la page précédente (plus récentes). La requête reprend directement à cette position
+ * grâce aux index (user_id_sender, created_at, id) et (user_id_receiver, created_at, id) :
+ * une page lointaine coûte autant que la première, contrairement à un OFFSET.
+ * </p>
+ * <p>
+ * Le curseur est transmis au navigateur sous forme de jeton opaque (Base64 URL).
+ * </p>
+ *
+ * @param createdAt date de création de la transaction de référence
+ * @param id        identifiant de la transaction de référence
+ * @param older     sens de lecture
+ */
+public record HistoryCursor(LocalDateTime createdAt, int id, boolean older) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * @return le jeton opaque représentant ce curseur
+     */
+    public String encode() {
+        String raw = (older ? "o" : "n") + SEPARATOR + createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un jeton produit par {@link #encode()}.
+     *
+     * @param token jeton reçu du navigateur
+     * @return le curseur correspondant
+     * @throws IllegalArgumentException si le jeton est invalide
+     */
+    public static HistoryCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|");
+            if (parts.length != 3 || !(parts[0].equals("o") || parts[0].equals("n"))) {
+                throw new IllegalArgumentException("Curseur de pagination invalide.");
+            }
+            return new HistoryCursor(LocalDateTime.parse(parts[1]), Integer.parseInt(parts[2]), parts[0].equals("o"));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide.", e);
+        }
+    }
+}
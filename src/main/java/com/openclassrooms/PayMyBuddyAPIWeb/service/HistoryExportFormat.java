@@ -0,0 +1,141 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Formats d'export de l'historique des transactions.
+ * <p>
+ * Chaque ligne est écrite dès sa lecture : aucun format ne demande de garder l'historique en mémoire.
+ * </p>
+ */
+public enum HistoryExportFormat {
+
+    /** CSV (séparateur virgule, champs texte entre guillemets si nécessaire) */
+    CSV("text/csv", "csv") {
+        @Override
+        public void writeHeader(Writer out) throws IOException {
+            out.write("date,relation,description,montant\n");
+        }
+
+        @Override
+        public void writeRow(Writer out, LocalDateTime date, String relation, String description, BigDecimal montant)
+                throws IOException {
+            out.write(String.valueOf(date));
+            out.write(',');
+            out.write(csvText(relation));
+            out.write(',');
+            out.write(csvText(description));
+            out.write(',');
+            out.write(montant.toPlainString());
+            out.write('\n');
+        }
+    },
+
+    /** JSON Lines : un objet JSON par ligne */
+    JSONL("application/x-ndjson", "jsonl") {
+        @Override
+        public void writeHeader(Writer out) {
+            // pas d'en-tête : chaque ligne est autonome
+        }
+
+        @Override
+        public void writeRow(Writer out, LocalDateTime date, String relation, String description, BigDecimal montant)
+                throws IOException {
+            out.write("{\"date\":\"");
+            out.write(String.valueOf(date));
+            out.write("\",\"relation\":");
+            out.write(jsonText(relation));
+            out.write(",\"description\":");
+            out.write(jsonText(description));
+            out.write(",\"montant\":");
+            out.write(montant.toPlainString());
+            out.write("}\n");
+        }
+    };
+
+    private final String contentType;
+
+    private final String extension;
+
+    HistoryExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    /** @return type MIME de la réponse */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /** @return extension du fichier téléchargé */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Écrit l'en-tête du fichier (s'il y en a un).
+     *
+     * @param out flux de sortie
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public abstract void writeHeader(Writer out) throws IOException;
+
+    /**
+     * Écrit une transaction.
+     *
+     * @param out         flux de sortie
+     * @param date        date de la transaction
+     * @param relation    nom de la contrepartie
+     * @param description description du transfert
+     * @param montant     montant signé (négatif si envoyé)
+     * @throws IOException en cas d'erreur d'écriture
+     */
+    public abstract void writeRow(Writer out, LocalDateTime date, String relation, String description, BigDecimal montant)
+            throws IOException;
+
+    /**
+     * Retrouve un format à partir du paramètre de requête (csv, jsonl), sans tenir compte de la casse.
+     *
+     * @param value valeur du paramètre
+     * @return le format correspondant
+     * @throws IllegalArgumentException si le format n'est pas pris en charge
+     */
+    public static HistoryExportFormat fromParameter(String value) {
+        for (HistoryExportFormat format : values()) {
+            if (format.extension.equals(value == null ? null : value.toLowerCase(Locale.ROOT))) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Format d'export non pris en charge : " + value);
+    }
+
+    /**
+     * Champ texte CSV : entre guillemets s'il contient un séparateur, un guillemet ou un retour à la ligne.
+     * Un champ commençant par =, +, - ou @ est préfixé d'une apostrophe pour qu'un tableur ne l'interprète
+     * pas comme une formule.
+     */
+    static String csvText(String value) {
+        if (value == null) {
+            return "";
+        }
+        String text = !value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    /** Chaîne JSON échappée, entre guillemets (ou null) */
+    static String jsonText(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return '"' + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + '"';
+    }
+}
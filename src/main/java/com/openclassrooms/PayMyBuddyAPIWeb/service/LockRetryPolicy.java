@@ -0,0 +1,75 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Politique de rejeu des transactions dont les verrous n'ont pas pu être obtenus à temps
+ * (attente bornée ou interblocage détecté par MySQL).
+ * <p>
+ * Partagée par les transferts unitaires ({AppTransactionService}) et par le traitement groupé
+ * ({TransferPipeline}) : même nombre de tentatives et même attente croissante entre deux essais.
+ * </p>
+ */
+@Slf4j
+@Component
+public class LockRetryPolicy {
+
+    /** Nombre maximal de tentatives en cas d'échec d'obtention des verrous */
+    private final int maxAttempts;
+
+    /** Délai de base (ms) entre deux tentatives */
+    private final long backoffMs;
+
+    public LockRetryPolicy(@Value("${paymybuddy.transfer.lock-retry.max-attempts:3}") int maxAttempts,
+                           @Value("${paymybuddy.transfer.lock-retry.backoff-ms:50}") long backoffMs) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+    }
+
+    /**
+     * Exécute une opération transactionnelle, rejouée si les verrous n'ont pas pu être obtenus,
+     * jusqu'à {@code paymybuddy.transfer.lock-retry.max-attempts} fois.
+     *
+     * @param label libellé de l'opération pour les logs
+     * @param work  opération à exécuter (ouvre et commite sa propre transaction)
+     * @return le résultat de l'opération
+     * @throws PessimisticLockingFailureException si les verrous n'ont pas pu être obtenus après toutes les tentatives
+     */
+    public <T> T execute(String label, Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.get();
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    log.error("{} abandonné après {} tentatives : {}", label, attempt, e.getMessage());
+                    throw e;
+                }
+                log.warn("Verrou non obtenu pour {} (tentative {}), nouvel essai", label, attempt);
+                waitBeforeRetry(attempt);
+            }
+        }
+    }
+
+    /**
+     * Attend avant de rejouer une transaction dont les verrous n'ont pas pu être obtenus.
+     * L'attente croît avec le numéro de tentative et est légèrement aléatoire
+     * pour que des transferts en conflit ne se rejouent pas au même instant.
+     *
+     * @param attempt numéro de la tentative qui vient d'échouer (à partir de 1)
+     */
+    private void waitBeforeRetry(int attempt) {
+        long delay = backoffMs * attempt + ThreadLocalRandom.current().nextLong(backoffMs + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Transfert interrompu", e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.TransferHistoryRow;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cache mémoire des dernières transactions de chaque utilisateur (première page de l'historique).
+ * <p>
+ * Pour chaque utilisateur, le cache garde au plus {@code paymybuddy.history.cache.rows} lignes, de la plus récente
+ * à la plus ancienne. Il est borné en nombre d'utilisateurs (éviction LRU) et en durée.
+ * Les transferts le mettent à jour après leur commit ({#recordAfterCommit}) : la nouvelle ligne est insérée
+ * à sa place dans l'entrée de l'expéditeur et dans celle du destinataire, si elles sont en cache.
+ * Les pages plus anciennes sont toujours lues en base.
+ * </p>
+ * <p>
+ * Les statistiques (hits, miss, évictions) sont publiées sous le nom de cache {@code paymybuddy.history.recent}.
+ * </p>
+ */
+@Component
+public class RecentHistoryCache {
+
+    /** Ordre d'affichage de l'historique : (created_at, id) décroissants */
+    private static final Comparator<TransferHistoryRow> LATEST_FIRST = Comparator
+            .comparing(TransferHistoryRow::getCreatedAt)
+            .thenComparing(TransferHistoryRow::getId)
+            .reversed();
+
+    private final AppTransactionRepository appTransactionRepository;
+
+    private final Cache<Integer, RecentHistory> entries;
+
+    private final int rows;
+
+    /**
+     * @param appTransactionRepository repository utilisé pour charger une entrée absente
+     * @param meterRegistry            registre des métriques du cache
+     * @param maxUsers                 nombre maximal d'utilisateurs en cache
+     * @param rows                     nombre de transactions conservées par utilisateur
+     * @param ttlMs                    durée de vie d'une entrée après son chargement (ms)
+     */
+    public RecentHistoryCache(AppTransactionRepository appTransactionRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${paymybuddy.history.cache.max-users:10000}") long maxUsers,
+                              @Value("${paymybuddy.history.cache.rows:50}") int rows,
+                              @Value("${paymybuddy.history.cache.ttl-ms:300000}") long ttlMs) {
+        this.appTransactionRepository = appTransactionRepository;
+        this.rows = rows;
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                // durée comptée depuis le chargement : les mises à jour après commit ne prolongent pas l'entrée
+                .expireAfter(Expiry.creating((Integer userId, RecentHistory entry) -> Duration.ofMillis(ttlMs)))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "paymybuddy.history.recent");
+    }
+
+    /**
+     * Renvoie les dernières transactions d'un utilisateur, de la plus récente à la plus ancienne.
+     * <p>
+     * Lues dans le cache (chargé en base au premier accès) si {@code limit} ne dépasse pas sa capacité,
+     * sinon directement en base.
+     *
+     * @param userId identifiant de l'utilisateur
+     * @param limit  nombre maximal de lignes
+     * @return au plus {@code limit} lignes
+     */
+    public List<TransferHistoryRow> findLatest(int userId, int limit) {
+        if (limit > rows) {
+            return appTransactionRepository.findLatestHistory(userId, limit);
+        }
+        List<TransferHistoryRow> latest = entries.get(userId, this::load).rows();
+        return latest.subList(0, Math.min(limit, latest.size()));
+    }
+
+    /**
+     * Reporte des transactions dans le cache après le commit de la transaction courante
+     * (immédiatement si aucune transaction n'est active). Un rollback n'a aucun effet sur le cache.
+     * <p>
+     * Les noms des deux utilisateurs sont lus pendant la transaction, uniquement s'ils sont déjà chargés :
+     * si un nom manque, l'entrée concernée est simplement invalidée.
+     *
+     * @param transactions transactions enregistrées (identifiant et date de création renseignés)
+     */
+    public void recordAfterCommit(Collection<AppTransaction> transactions) {
+        List<CommittedTransfer> transfers = transactions.stream().map(CommittedTransfer::of).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            transfers.forEach(this::apply);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                transfers.forEach(RecentHistoryCache.this::apply);
+            }
+        });
+    }
+
+    private RecentHistory load(int userId) {
+        List<TransferHistoryRow> loaded = appTransactionRepository.findLatestHistory(userId, rows).stream()
+                .<TransferHistoryRow>map(CachedRow::copyOf)
+                .toList();
+        return new RecentHistory(loaded);
+    }
+
+    private void apply(CommittedTransfer transfer) {
+        update(transfer.senderId(), transfer.receiverName() == null ? null : new CachedRow(transfer.id(),
+                transfer.createdAt(), transfer.receiverName(), transfer.description(), transfer.amount().negate()));
+        update(transfer.receiverId(), transfer.senderName() == null ? null : new CachedRow(transfer.id(),
+                transfer.createdAt(), transfer.senderName(), transfer.description(), transfer.amount()));
+    }
+
+    /**
+     * Insère une ligne dans l'entrée d'un utilisateur si elle est en cache (sinon rien à faire).
+     * Un chargement concurrent de la même entrée est attendu avant l'insertion ; une ligne déjà lue en base
+     * n'est pas dupliquée.
+     */
+    private void update(int userId, TransferHistoryRow row) {
+        if (row == null) {
+            entries.invalidate(userId);
+            return;
+        }
+        entries.asMap().computeIfPresent(userId, (id, entry) -> entry.with(row, rows));
+    }
+
+    /**
+     * Dernières transactions d'un utilisateur (liste non modifiable, de la plus récente à la plus ancienne).
+     */
+    private record RecentHistory(List<TransferHistoryRow> rows) {
+
+        RecentHistory with(TransferHistoryRow row, int capacity) {
+            if (rows.stream().anyMatch(existing -> existing.getId().equals(row.getId()))) {
+                return this;
+            }
+            List<TransferHistoryRow> updated = new ArrayList<>(rows.size() + 1);
+            updated.addAll(rows);
+            updated.add(row);
+            updated.sort(LATEST_FIRST);
+            if (updated.size() > capacity) {
+                updated.remove(updated.size() - 1);
+            }
+            return new RecentHistory(List.copyOf(updated));
+        }
+    }
+
+    /**
+     * Transaction commitée, vue par le cache. Les noms valent null s'ils n'étaient pas chargés.
+     */
+    private record CommittedTransfer(int id, LocalDateTime createdAt, String description, BigDecimal amount,
+                                     int senderId, String senderName, int receiverId, String receiverName) {
+
+        static CommittedTransfer of(AppTransaction tx) {
+            return new CommittedTransfer(tx.getTransactionId(), tx.getTransactionCreatedAt(), tx.getDescription(),
+                    tx.getAmountTransaction(), tx.getSender().getUserId(), loadedName(tx.getSender()),
+                    tx.getReceiver().getUserId(), loadedName(tx.getReceiver()));
+        }
+
+        private static String loadedName(AppUser user) {
+            return Hibernate.isInitialized(user) ? user.getUserName() : null;
+        }
+    }
+
+    /**
+     * Ligne d'historique conservée en cache (copie immuable, détachée de la requête qui l'a lue).
+     */
+    static final class CachedRow implements TransferHistoryRow {
+
+        private final Integer id;
+        private final LocalDateTime createdAt;
+        private final String relation;
+        private final String description;
+        private final BigDecimal montant;
+
+        CachedRow(Integer id, LocalDateTime createdAt, String relation, String description, BigDecimal montant) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.relation = relation;
+            this.description = description;
+            this.montant = montant;
+        }
+
+        static CachedRow copyOf(TransferHistoryRow row) {
+            return new CachedRow(row.getId(), row.getCreatedAt(), row.getRelation(), row.getDescription(), row.getMontant());
+        }
+
+        @Override
+        public Integer getId() {
+            return id;
+        }
+
+        @Override
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+
+        @Override
+        public String getRelation() {
+            return relation;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public BigDecimal getMontant() {
+            return montant;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recalcul des compteurs de transactions (app_user.tx_count).
+ * <p>
+ * Les transferts incrémentent ces compteurs dans leur propre transaction ; ce traitement corrige les écarts
+ * éventuels (transactions insérées hors application, reprise de données) en recomptant l'historique.
+ * Les utilisateurs sont traités par tranches d'identifiants, une transaction courte par tranche,
+ * pour ne jamais verrouiller toute la table app_user. Un transfert commité pendant le recalcul de sa tranche
+ * peut laisser un écart d'une unité, corrigé au passage suivant.
+ * </p>
+ *
+ * <p>Planification : {@code paymybuddy.tx-count.repair-cron} (désactivée par défaut avec "-").</p>
+ */
+@Slf4j
+@Component
+public class TransactionCountRepairJob {
+
+    /** Borne haute de la tranche commençant après l'identifiant donné */
+    private static final String NEXT_CHUNK_END_SQL =
+            "SELECT MAX(id) FROM (SELECT id FROM app_user WHERE id > ? ORDER BY id LIMIT ?) chunk";
+
+    /** Recompte les transactions des utilisateurs d'une tranche (deux comptages indexés par utilisateur) */
+    private static final String REPAIR_CHUNK_SQL = "UPDATE app_user u SET tx_count = "
+            + "(SELECT COUNT(*) FROM app_transaction t WHERE t.user_id_sender = u.id) + "
+            + "(SELECT COUNT(*) FROM app_transaction t WHERE t.user_id_receiver = u.id) "
+            + "WHERE u.id > ? AND u.id <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int chunkSize;
+
+    public TransactionCountRepairJob(JdbcTemplate jdbcTemplate,
+                                     @Value("${paymybuddy.tx-count.repair-chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Recalcule les compteurs de tous les utilisateurs, tranche par tranche.
+     *
+     * @return le nombre d'utilisateurs recalculés
+     */
+    @Scheduled(cron = "${paymybuddy.tx-count.repair-cron:-}")
+    public int repairAll() {
+        int repaired = 0;
+        int lastId = 0;
+        Integer chunkEnd;
+        while ((chunkEnd = jdbcTemplate.queryForObject(NEXT_CHUNK_END_SQL, Integer.class, lastId, chunkSize)) != null) {
+            repaired += jdbcTemplate.update(REPAIR_CHUNK_SQL, lastId, chunkEnd);
+            lastId = chunkEnd;
+        }
+        log.info("Compteurs de transactions recalculés pour {} utilisateur(s)", repaired);
+        return repaired;
+    }
+}
@@ -0,0 +1,62 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository.IdempotencyScope;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Cache mémoire des clés d'idempotence des transferts récemment commités.
+ * <p>
+ * Un rejeu (double clic, nouvel essai d'un proxy après un timeout) dont la clé est encore dans le cache
+ * est confirmé immédiatement, sans aucun accès à la base. Le cache est borné en taille (éviction LRU)
+ * et en durée : au-delà, c'est la table transfer_idempotency qui garantit l'unicité.
+ * </p>
+ */
+@Component
+public class TransferIdempotencyCache {
+
+    private final Cache<String, Boolean> keys;
+
+    /**
+     * @param maxSize nombre maximal de clés conservées
+     * @param ttlMs   durée de conservation d'une clé après son commit (ms)
+     */
+    public TransferIdempotencyCache(@Value("${paymybuddy.transfer.idempotency.cache-size:100000}") long maxSize,
+                                    @Value("${paymybuddy.transfer.idempotency.cache-ttl-ms:600000}") long ttlMs) {
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * Indique si le transfert portant cette clé a déjà été commité récemment.
+     *
+     * @param userId identifiant de l'expéditeur
+     * @param scope  type d'opération
+     * @param key    clé d'idempotence fournie par le client
+     * @return {@code true} si la clé est connue
+     */
+    public boolean contains(int userId, IdempotencyScope scope, String key) {
+        return keys.getIfPresent(cacheKey(userId, scope, key)) != null;
+    }
+
+    /**
+     * Enregistre une clé dont le transfert est commité.
+     *
+     * @param userId identifiant de l'expéditeur
+     * @param scope  type d'opération
+     * @param key    clé d'idempotence fournie par le client
+     */
+    public void remember(int userId, IdempotencyScope scope, String key) {
+        keys.put(cacheKey(userId, scope, key), Boolean.TRUE);
+    }
+
+    private static String cacheKey(int userId, IdempotencyScope scope, String key) {
+        return userId + ":" + scope + ":" + key;
+    }
+}
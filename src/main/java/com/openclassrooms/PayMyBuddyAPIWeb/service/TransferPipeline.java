@@ -0,0 +1,308 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.FriendshipJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository.AccountChange;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository.IdempotencyScope;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traitement groupé ("group commit") des transferts d'argent.
+ * <p>
+ * Lorsque {@code paymybuddy.transfer.group-commit.enabled=true}, les transferts validés sont déposés
+ * dans une file bornée. Un unique thread d'écriture les regroupe par lots (jusqu'à
+ * {@code max-batch-size} transferts ou {@code max-batch-delay-ms} millisecondes) et applique chaque lot
+ * dans une seule transaction :
+ * </p>
+ * <ol>
+ *     <li>verrouillage de tous les comptes concernés dans l'ordre croissant des identifiants ;</li>
+ *     <li>contrôle des soldes transfert par transfert, dans l'ordre d'arrivée (un transfert refusé
+ *         pour solde insuffisant n'annule pas le reste du lot) ;</li>
+ *     <li>réservation de la clé d'idempotence des transferts acceptés (un rejeu est confirmé sans être appliqué) ;</li>
+ *     <li>une seule variation nette par compte (solde et compteur de transactions), envoyée en un lot JDBC ;</li>
+ *     <li>insertion des {AppTransaction} acceptées, reportées après le commit dans le cache
+ *         des dernières transactions ({RecentHistoryCache}).</li>
+ * </ol>
+ * <p>
+ * Le coût du commit (et de l'écriture disque associée) est ainsi partagé par tous les transferts du lot.
+ * Chaque appelant reçoit un {@link CompletableFuture} terminé une fois le lot commité.
+ * </p>
+ */
+@Slf4j
+@Component
+public class TransferPipeline {
+
+    private final AppUserRepository appUserRepository;
+
+    private final AppTransactionRepository appTransactionRepository;
+
+    private final TransferJdbcRepository transferJdbcRepository;
+
+    private final FriendshipJdbcRepository friendshipJdbcRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final RecentHistoryCache recentHistoryCache;
+
+    private final boolean enabled;
+
+    private final int maxBatchSize;
+
+    private final long maxBatchDelayNanos;
+
+    private final LockRetryPolicy lockRetryPolicy;
+
+    private final BlockingQueue<TransferCommand> queue;
+
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+
+    private Thread writer;
+
+    public TransferPipeline(AppUserRepository appUserRepository,
+                            AppTransactionRepository appTransactionRepository,
+                            TransferJdbcRepository transferJdbcRepository,
+                            FriendshipJdbcRepository friendshipJdbcRepository,
+                            TransactionTemplate transactionTemplate,
+                            RecentHistoryCache recentHistoryCache,
+                            LockRetryPolicy lockRetryPolicy,
+                            MeterRegistry meterRegistry,
+                            @Value("${paymybuddy.transfer.group-commit.enabled:false}") boolean enabled,
+                            @Value("${paymybuddy.transfer.group-commit.queue-capacity:10000}") int queueCapacity,
+                            @Value("${paymybuddy.transfer.group-commit.max-batch-size:200}") int maxBatchSize,
+                            @Value("${paymybuddy.transfer.group-commit.max-batch-delay-ms:5}") long maxBatchDelayMs) {
+        this.appUserRepository = appUserRepository;
+        this.appTransactionRepository = appTransactionRepository;
+        this.transferJdbcRepository = transferJdbcRepository;
+        this.friendshipJdbcRepository = friendshipJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.recentHistoryCache = recentHistoryCache;
+        this.lockRetryPolicy = lockRetryPolicy;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMs);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizes = DistributionSummary.builder("paymybuddy.transfer.pipeline.batch.size")
+                .description("Nombre de transferts appliqués par transaction").register(meterRegistry);
+        Gauge.builder("paymybuddy.transfer.pipeline.queue.size", queue, BlockingQueue::size)
+                .description("Transferts en attente d'écriture").register(meterRegistry);
+    }
+
+    /**
+     * Indique si les transferts doivent passer par le traitement groupé.
+     *
+     * @return {@code true} si le mode group commit est activé
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "transfer-pipeline-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Traitement groupé des transferts activé (lots de {} max)", maxBatchSize);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        List<TransferCommand> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(cmd -> cmd.result().completeExceptionally(new IllegalStateException("Application en cours d'arrêt.")));
+    }
+
+    /**
+     * Dépose un transfert déjà validé (montant positif, destinataire ami de l'expéditeur) dans la file.
+     *
+     * @param senderId    identifiant de l'expéditeur
+     * @param receiverId  identifiant du destinataire
+     * @param amount      montant du transfert
+     * @param description description du transfert
+     * @param idempotencyKey clé d'idempotence, ou {@code null}
+     * @return un futur terminé une fois le lot contenant ce transfert commité ;
+     *         en échec avec une {@link IllegalArgumentException} si le solde est insuffisant
+     * @throws IllegalStateException si la file est pleine ou si le mode n'est pas activé
+     */
+    public CompletableFuture<Void> submit(int senderId, int receiverId, BigDecimal amount, String description,
+                                          String idempotencyKey) {
+        if (!running) {
+            throw new IllegalStateException("Le traitement groupé des transferts n'est pas démarré.");
+        }
+        TransferCommand command = new TransferCommand(senderId, receiverId, amount, description, idempotencyKey,
+                new CompletableFuture<>());
+        if (!queue.offer(command)) {
+            throw new IllegalStateException("Trop de transferts en attente, réessayez plus tard.");
+        }
+        return command.result();
+    }
+
+    /**
+     * Boucle du thread d'écriture : attend un premier transfert, complète le lot pendant au plus
+     * {@code max-batch-delay-ms}, puis l'applique.
+     */
+    private void writeLoop() {
+        List<TransferCommand> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                TransferCommand first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxBatchDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    TransferCommand next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                applyWithRetry(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(cmd -> cmd.result().completeExceptionally(new IllegalStateException("Application en cours d'arrêt.")));
+                return;
+            } catch (RuntimeException e) {
+                log.error("Échec du lot de {} transferts : {}", batch.size(), e.getMessage());
+                batch.forEach(cmd -> cmd.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Applique un lot, en le rejouant selon la politique {LockRetryPolicy} si les verrous
+     * n'ont pas pu être obtenus à temps. Les futurs ne sont terminés qu'après le commit.
+     */
+    private void applyWithRetry(List<TransferCommand> batch) {
+        Map<TransferCommand, RuntimeException> rejected = lockRetryPolicy.execute(
+                "Lot de " + batch.size() + " transferts",
+                () -> transactionTemplate.execute(status -> applyBatch(batch)));
+        batchSizes.record(batch.size());
+        for (TransferCommand cmd : batch) {
+            RuntimeException error = rejected.get(cmd);
+            if (error == null) {
+                cmd.result().complete(null);
+            } else {
+                cmd.result().completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Applique un lot dans la transaction courante.
+     *
+     * @param batch transferts du lot, dans l'ordre d'arrivée
+     * @return les transferts refusés et la cause du refus
+     */
+    private Map<TransferCommand, RuntimeException> applyBatch(List<TransferCommand> batch) {
+        TreeSet<Integer> accountIds = new TreeSet<>();
+        batch.forEach(cmd -> {
+            accountIds.add(cmd.senderId());
+            accountIds.add(cmd.receiverId());
+        });
+
+        // Verrouille tous les comptes du lot dans l'ordre croissant des identifiants
+        Map<Integer, BigDecimal> balances = new HashMap<>();
+        for (AppUser user : appUserRepository.findAllByIdsForUpdate(accountIds)) {
+            balances.put(user.getUserId(), user.getBalance());
+        }
+
+        // Contrôle des soldes dans l'ordre d'arrivée, sur les soldes verrouillés
+        Map<TransferCommand, RuntimeException> rejected = new HashMap<>();
+        Map<Integer, AccountChange> changes = new LinkedHashMap<>();
+        List<AppTransaction> transactions = new ArrayList<>(batch.size());
+        for (TransferCommand cmd : batch) {
+            BigDecimal senderBalance = balances.get(cmd.senderId());
+            if (senderBalance == null || !balances.containsKey(cmd.receiverId())) {
+                rejected.put(cmd, new IllegalArgumentException("Relation introuvable"));
+                continue;
+            }
+            if (senderBalance.compareTo(cmd.amount()) < 0) {
+                rejected.put(cmd, new IllegalArgumentException("Solde insuffisant."));
+                continue;
+            }
+            // Clé réservée seulement pour un transfert accepté : un refus peut être retenté avec la même clé
+            if (cmd.idempotencyKey() != null
+                    && !transferJdbcRepository.claimIdempotencyKey(cmd.senderId(), IdempotencyScope.TRANSFER, cmd.idempotencyKey())) {
+                continue; // rejeu d'un transfert déjà exécuté
+            }
+            balances.put(cmd.senderId(), senderBalance.subtract(cmd.amount()));
+            balances.merge(cmd.receiverId(), cmd.amount(), BigDecimal::add);
+            changes.merge(cmd.senderId(), new AccountChange(cmd.amount().negate(), 1), AccountChange::plus);
+            changes.merge(cmd.receiverId(), new AccountChange(cmd.amount(), 1), AccountChange::plus);
+            transactions.add(newTransaction(cmd));
+        }
+
+        // Une variation nette (solde et compteur de transactions) par compte, en un seul lot JDBC
+        if (!changes.isEmpty()) {
+            for (int updated : transferJdbcRepository.applyBalanceDeltas(changes)) {
+                if (updated != 1) {
+                    throw new IllegalStateException("Incohérence des soldes pendant le traitement groupé.");
+                }
+            }
+        }
+        appTransactionRepository.saveAll(transactions);
+        if (!transactions.isEmpty()) {
+            friendshipJdbcRepository.recordTransfers(transactions); // contacts récents des expéditeurs
+        }
+        recentHistoryCache.recordAfterCommit(transactions);
+        return rejected;
+    }
+
+    private AppTransaction newTransaction(TransferCommand cmd) {
+        AppTransaction tx = new AppTransaction();
+        tx.setSender(appUserRepository.getReferenceById(cmd.senderId()));
+        tx.setReceiver(appUserRepository.getReferenceById(cmd.receiverId()));
+        tx.setAmountTransaction(cmd.amount());
+        tx.setDescription(cmd.description());
+        tx.setTransactionCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS)); // précision de created_at
+        return tx;
+    }
+
+    /**
+     * Transfert en attente d'écriture.
+     */
+    private record TransferCommand(int senderId, int receiverId, BigDecimal amount, String description,
+                                   String idempotencyKey, CompletableFuture<Void> result) {
+    }
+}
@@ -0,0 +1,247 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Index en mémoire des noms d'utilisateur et emails déjà pris, pour la validation à la saisie du formulaire
+ * d'inscription (GET /register/availability).
+ * <p>
+ * Chaque valeur est enregistrée dans un filtre de Bloom : une valeur absente du filtre est libre à coup sûr,
+ * la réponse est donnée sans accès à la base. Une valeur présente dans le filtre est peut-être prise
+ * (faux positif possible, environ {@code false-positive-rate}) : seule cette valeur est vérifiée en base.
+ * </p>
+ * <p>
+ * Le filtre est rempli au démarrage en parcourant app_user en flux, puis complété par
+ * {AppUserService#createUser} et {AppUserService#updateUser}. Un filtre de Bloom ne permet pas de retirer
+ * une valeur : un ancien nom reste "peut-être pris" et passe donc par la base. La réponse reste indicative :
+ * seules les contraintes d'unicité de app_user font foi à l'inscription (ex : utilisateur créé par une autre instance).
+ * Une reconstruction périodique est possible ({@code paymybuddy.register.availability.rebuild-cron}).
+ * </p>
+ * <p>
+ * Les valeurs sont comparées sans tenir compte de la casse ni des accents, comme la collation de MySQL.
+ * </p>
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class UserAvailabilityIndex {
+
+    private static final String ALL_NAMES_SQL = "SELECT username, email FROM app_user";
+
+    private final AppUserRepository appUserRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long expectedUsers;
+
+    private final double falsePositiveRate;
+
+    private final Counter answeredInMemory;
+
+    private final Counter checkedInDatabase;
+
+    private volatile BloomFilter userNames;
+
+    private volatile BloomFilter emails;
+
+    /**
+     * @param appUserRepository repository utilisé pour vérifier une valeur peut-être prise
+     * @param jdbcTemplate      accès JDBC pour le parcours de app_user au démarrage
+     * @param meterRegistry     registre des métriques
+     * @param expectedUsers     nombre d'utilisateurs prévu (dimensionnement des filtres)
+     * @param falsePositiveRate taux de faux positifs visé pour ce nombre d'utilisateurs
+     */
+    public UserAvailabilityIndex(AppUserRepository appUserRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${paymybuddy.register.availability.expected-users:1000000}") long expectedUsers,
+                                 @Value("${paymybuddy.register.availability.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.appUserRepository = appUserRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.answeredInMemory = Counter.builder("paymybuddy.register.availability.checks")
+                .tag("source", "memory").description("Vérifications de disponibilité").register(meterRegistry);
+        this.checkedInDatabase = Counter.builder("paymybuddy.register.availability.checks")
+                .tag("source", "database").description("Vérifications de disponibilité").register(meterRegistry);
+        this.userNames = new BloomFilter(expectedUsers, falsePositiveRate);
+        this.emails = new BloomFilter(expectedUsers, falsePositiveRate);
+    }
+
+    /**
+     * (Re)construit les filtres en parcourant app_user, ligne par ligne, puis remplace les filtres courants.
+     * Les valeurs ajoutées pendant le parcours sont aussi ajoutées aux nouveaux filtres.
+     */
+    @PostConstruct
+    @Scheduled(cron = "${paymybuddy.register.availability.rebuild-cron:-}")
+    public void rebuild() {
+        BloomFilter newUserNames = new BloomFilter(expectedUsers, falsePositiveRate);
+        BloomFilter newEmails = new BloomFilter(expectedUsers, falsePositiveRate);
+        BloomFilter currentUserNames = userNames;
+        BloomFilter currentEmails = emails;
+        // ajouts concurrents : écrits dans les deux générations pendant la reconstruction
+        userNames = currentUserNames.alsoInto(newUserNames);
+        emails = currentEmails.alsoInto(newEmails);
+
+        // Integer.MIN_VALUE : le pilote MySQL transmet les lignes une à une au lieu de charger toute la table
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(Integer.MIN_VALUE);
+        long[] count = {0};
+        streaming.query(ALL_NAMES_SQL, rs -> {
+            newUserNames.put(normalize(rs.getString(1)));
+            newEmails.put(normalize(rs.getString(2)));
+            count[0]++;
+        });
+        userNames = newUserNames;
+        emails = newEmails;
+        log.info("Index de disponibilité des noms et emails construit ({} utilisateurs)", count[0]);
+    }
+
+    /**
+     * Enregistre un nom d'utilisateur et un email désormais pris.
+     *
+     * @param userName nom d'utilisateur (ignoré si null)
+     * @param email    email (ignoré si null)
+     */
+    public void register(String userName, String email) {
+        if (userName != null) {
+            userNames.put(normalize(userName));
+        }
+        if (email != null) {
+            emails.put(normalize(email));
+        }
+    }
+
+    /**
+     * @param userName nom d'utilisateur souhaité
+     * @return {@code true} si le nom d'utilisateur est libre
+     */
+    public boolean isUserNameAvailable(String userName) {
+        if (!userNames.mightContain(normalize(userName))) {
+            answeredInMemory.increment();
+            return true;
+        }
+        checkedInDatabase.increment();
+        return !appUserRepository.existsByUserName(userName.trim());
+    }
+
+    /**
+     * @param email email souhaité
+     * @return {@code true} si l'email est libre
+     */
+    public boolean isEmailAvailable(String email) {
+        if (!emails.mightContain(normalize(email))) {
+            answeredInMemory.increment();
+            return true;
+        }
+        checkedInDatabase.increment();
+        return !appUserRepository.existsByEmail(email.trim());
+    }
+
+    /** Forme comparable d'une valeur : sans espaces autour, en minuscules, sans accents */
+    static String normalize(String value) {
+        String decomposed = Normalizer.normalize(value.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "");
+    }
+
+    /**
+     * Filtre de Bloom à k fonctions de hachage (double hachage d'une empreinte 64 bits), sûr entre threads.
+     */
+    static class BloomFilter {
+
+        private final AtomicLongArray bits;
+
+        private final long bitCount;
+
+        private final int hashCount;
+
+        /**
+         * @param expectedInsertions nombre de valeurs prévu
+         * @param falsePositiveRate  taux de faux positifs visé pour ce nombre de valeurs
+         */
+        BloomFilter(long expectedInsertions, double falsePositiveRate) {
+            long n = Math.max(1, expectedInsertions);
+            long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bitCount = Math.max(64, (m + 63) / 64 * 64);
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+            this.bits = new AtomicLongArray((int) (bitCount / 64));
+        }
+
+        void put(String value) {
+            long hash = fingerprint(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = Math.floorMod(h1 + (long) i * h2, bitCount);
+                long mask = 1L << index;
+                int word = (int) (index >>> 6);
+                long current;
+                while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        boolean mightContain(String value) {
+            long hash = fingerprint(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long index = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return un filtre qui lit celui-ci et écrit aussi dans {@code next} (pendant une reconstruction)
+         */
+        BloomFilter alsoInto(BloomFilter next) {
+            BloomFilter current = this;
+            return new BloomFilter(this) {
+                @Override
+                void put(String value) {
+                    current.put(value);
+                    next.put(value);
+                }
+            };
+        }
+
+        private BloomFilter(BloomFilter shared) {
+            this.bits = shared.bits;
+            this.bitCount = shared.bitCount;
+            this.hashCount = shared.hashCount;
+        }
+
+        /** Empreinte 64 bits (FNV-1a sur l'UTF-8, suivie d'un mélange final) */
+        private static long fingerprint(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb3fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Annuaire des utilisateurs en mémoire, pour la recherche pendant la saisie de la page relation
+ * (GET /relation/users).
+ * <p>
+ * Le nom d'utilisateur et l'email sont découpés en trigrammes (suites de 3 caractères), après normalisation
+ * (casse et accents ignorés, comme {UserAvailabilityIndex}). Pour chaque trigramme, l'index garde la liste triée
+ * des identifiants des utilisateurs qui le contiennent. Une recherche croise les listes des trigrammes du texte saisi,
+ * puis vérifie chaque candidat : une partie de nom ou d'email est trouvée sans parcourir app_user
+ * (un {@code LIKE '%x%'} ne peut utiliser aucun index). Le début de chaque valeur est aussi indexé
+ * (trigramme marqué) : un texte de 2 caractères recherche les noms et emails qui commencent par ces caractères.
+ * </p>
+ * <p>
+ * Classement : nom qui commence par le texte, puis email qui commence par le texte, puis partie de nom ou d'email ;
+ * à rang égal, le nom le plus court. Une recherche examine au plus {@code paymybuddy.relation.directory.max-candidates}
+ * utilisateurs et n'alloue que des tableaux bornés par la longueur du texte et le nombre de résultats demandés,
+ * quel que soit le nombre d'utilisateurs.
+ * </p>
+ * <p>
+ * L'index est chargé au démarrage en parcourant app_user en flux, puis tenu à jour par {AppUserService#createUser}
+ * et {AppUserService#updateUser} ({#recordAfterCommit}). Une reconstruction périodique depuis la base est possible
+ * ({@code paymybuddy.relation.directory.rebuild-cron}).
+ * </p>
+ */
+@Slf4j
+@Component
+@DependsOnDatabaseInitialization
+public class UserDirectoryIndex {
+
+    /** Longueur minimale du texte recherché */
+    public static final int MIN_QUERY_LENGTH = 2;
+
+    /** Longueur maximale du texte recherché (au-delà, il est tronqué) */
+    private static final int MAX_QUERY_LENGTH = 64;
+
+    /** Marque le début d'une valeur : le trigramme "\0ab" signifie "commence par ab" */
+    private static final char START = '\0';
+
+    /** Ordre de la clé primaire : chaque identifiant est ajouté en fin de liste, sans décalage */
+    static final String ALL_USERS_SQL = "SELECT id, username, email FROM app_user ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int maxCandidates;
+
+    /** Protège l'index : les recherches se font sous le verrou de lecture */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Index index = new Index();
+
+    /** Utilisateurs enregistrés pendant une reconstruction, rejoués dans le nouvel index (null hors reconstruction) */
+    private Map<Integer, Entry> recordedDuringRebuild;
+
+    /**
+     * @param jdbcTemplate  accès JDBC pour le parcours de app_user
+     * @param meterRegistry registre des métriques
+     * @param maxCandidates nombre maximal d'utilisateurs examinés par recherche
+     */
+    public UserDirectoryIndex(JdbcTemplate jdbcTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${paymybuddy.relation.directory.max-candidates:20000}") int maxCandidates) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxCandidates = maxCandidates;
+        Gauge.builder("paymybuddy.relation.directory.users", this, UserDirectoryIndex::size)
+                .description("Utilisateurs chargés dans l'annuaire de recherche").register(meterRegistry);
+    }
+
+    /**
+     * (Re)construit l'index en parcourant app_user dans l'ordre de sa clé primaire, ligne par ligne,
+     * puis remplace l'index courant.
+     * Les utilisateurs enregistrés pendant le parcours sont reportés dans le nouvel index.
+     */
+    @PostConstruct
+    @Scheduled(cron = "${paymybuddy.relation.directory.rebuild-cron:-}")
+    public void rebuild() {
+        Index loaded = new Index();
+        lock.writeLock().lock();
+        try {
+            recordedDuringRebuild = new HashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        boolean complete = false;
+        try {
+            // Integer.MIN_VALUE : le pilote MySQL transmet les lignes une à une au lieu de charger toute la table
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(Integer.MIN_VALUE);
+            streaming.query(ALL_USERS_SQL, rs -> {
+                loaded.put(new Entry(rs.getInt(1), rs.getString(2), rs.getString(3)));
+            });
+            complete = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (complete) {
+                    recordedDuringRebuild.values().forEach(loaded::put);
+                    index = loaded;
+                }
+                recordedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Annuaire de recherche des utilisateurs construit ({} utilisateurs, {} trigrammes)",
+                loaded.users.size(), loaded.postings.size());
+    }
+
+    /**
+     * Enregistre (ou met à jour) un utilisateur après le commit de la transaction courante
+     * (immédiatement si aucune transaction n'est active). Un rollback n'a aucun effet sur l'index.
+     *
+     * @param userId   identifiant de l'utilisateur
+     * @param userName nom d'utilisateur actuel
+     * @param email    email actuel
+     */
+    public void recordAfterCommit(int userId, String userName, String email) {
+        Entry entry = new Entry(userId, userName, email);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(entry);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(entry);
+            }
+        });
+    }
+
+    /**
+     * Recherche les utilisateurs dont le nom ou l'email contient le texte (ou commence par le texte,
+     * s'il ne fait que {MIN_QUERY_LENGTH} caractères), les mieux classés en premier.
+     *
+     * @param text           texte saisi
+     * @param excludedUserId identifiant d'un utilisateur à exclure des résultats (ex : l'utilisateur connecté)
+     * @param limit          nombre maximal de résultats
+     * @return les utilisateurs trouvés, au plus {@code limit} ; vide si le texte est trop court
+     */
+    public List<Match> search(String text, int excludedUserId, int limit) {
+        if (text == null || limit <= 0) {
+            return List.of();
+        }
+        String normalized = UserAvailabilityIndex.normalize(text);
+        if (normalized.length() > MAX_QUERY_LENGTH) {
+            normalized = normalized.substring(0, MAX_QUERY_LENGTH);
+        }
+        if (normalized.length() < MIN_QUERY_LENGTH) {
+            return List.of();
+        }
+        String trigrams = normalized.length() < 3 ? START + normalized : normalized;
+        Postings[] lists = new Postings[trigrams.length() - 2];
+        TopK top = new TopK(limit);
+
+        lock.readLock().lock();
+        try {
+            // Listes des trigrammes du texte : un trigramme absent de l'index suffit à conclure
+            Postings shortest = null;
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = index.postings.get(trigram(trigrams, i));
+                if (lists[i] == null) {
+                    return List.of();
+                }
+                if (shortest == null || lists[i].size < shortest.size) {
+                    shortest = lists[i];
+                }
+            }
+
+            // Candidats : la liste la plus courte, filtrée par les autres, puis vérifiés sur les valeurs
+            for (int i = 0, end = Math.min(shortest.size, maxCandidates); i < end; i++) {
+                int userId = shortest.ids[i];
+                if (userId == excludedUserId || !containedInAll(lists, userId)) {
+                    continue;
+                }
+                Entry entry = index.users.get(userId);
+                int rank = entry.rank(normalized);
+                if (rank >= 0) {
+                    top.offer(entry, rank);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top.toList();
+    }
+
+    /** @return nombre d'utilisateurs dans l'index */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.users.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            index.put(entry);
+            if (recordedDuringRebuild != null) {
+                recordedDuringRebuild.put(entry.userId(), entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean containedInAll(Postings[] lists, int userId) {
+        for (Postings list : lists) {
+            if (!list.contains(userId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Code d'un trigramme : les 3 caractères (16 bits chacun) dans un long */
+    private static long trigram(String value, int start) {
+        return ((long) value.charAt(start) << 32) | ((long) value.charAt(start + 1) << 16) | value.charAt(start + 2);
+    }
+
+    /**
+     * Utilisateur trouvé.
+     *
+     * @param userId   identifiant de l'utilisateur
+     * @param userName nom d'utilisateur
+     * @param email    email
+     */
+    public record Match(int userId, String userName, String email) {
+    }
+
+    /**
+     * Utilisateur indexé, avec ses valeurs normalisées.
+     */
+    private record Entry(int userId, String userName, String email, String normalizedName, String normalizedEmail) {
+
+        Entry(int userId, String userName, String email) {
+            this(userId, userName, email, UserAvailabilityIndex.normalize(userName), UserAvailabilityIndex.normalize(email));
+        }
+
+        /** @return 0 : le nom commence par le texte, 1 : l'email commence par le texte, 2 : partie du nom ou de l'email, -1 : absent */
+        int rank(String text) {
+            if (normalizedName.startsWith(text)) {
+                return 0;
+            }
+            if (normalizedEmail.startsWith(text)) {
+                return 1;
+            }
+            return normalizedName.contains(text) || normalizedEmail.contains(text) ? 2 : -1;
+        }
+
+        /** Trigrammes du nom et de l'email, y compris le trigramme marqué du début de chaque valeur */
+        void forEachTrigram(LongConsumer action) {
+            for (String value : new String[]{START + normalizedName, START + normalizedEmail}) {
+                for (int i = 0; i + 3 <= value.length(); i++) {
+                    action.accept(trigram(value, i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Utilisateurs et listes de trigrammes (accès sous le verrou de {UserDirectoryIndex}).
+     */
+    private static final class Index {
+
+        final Map<Integer, Entry> users = new HashMap<>();
+
+        final Map<Long, Postings> postings = new HashMap<>();
+
+        /** Ajoute un utilisateur, ou remplace ses anciennes valeurs */
+        void put(Entry entry) {
+            Entry previous = users.put(entry.userId(), entry);
+            if (previous != null) {
+                previous.forEachTrigram(key -> {
+                    Postings list = postings.get(key);
+                    if (list != null && list.remove(entry.userId()) && list.size == 0) {
+                        postings.remove(key);
+                    }
+                });
+            }
+            entry.forEachTrigram(key -> postings.computeIfAbsent(key, k -> new Postings()).add(entry.userId()));
+        }
+    }
+
+    /**
+     * Identifiants triés des utilisateurs contenant un trigramme (tableau agrandi au besoin).
+     */
+    private static final class Postings {
+
+        int[] ids = new int[2];
+
+        int size;
+
+        boolean contains(int userId) {
+            return Arrays.binarySearch(ids, 0, size, userId) >= 0;
+        }
+
+        void add(int userId) {
+            int position = Arrays.binarySearch(ids, 0, size, userId);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = userId;
+            size++;
+        }
+
+        boolean remove(int userId) {
+            int position = Arrays.binarySearch(ids, 0, size, userId);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * Meilleurs résultats d'une recherche, triés par (rang, longueur du nom, identifiant) ; taille fixe.
+     */
+    private static final class TopK {
+
+        private final Entry[] entries;
+
+        private final int[] ranks;
+
+        private int size;
+
+        TopK(int capacity) {
+            this.entries = new Entry[capacity];
+            this.ranks = new int[capacity];
+        }
+
+        void offer(Entry entry, int rank) {
+            int position = size;
+            while (position > 0 && before(entry, rank, entries[position - 1], ranks[position - 1])) {
+                position--;
+            }
+            if (position == entries.length) {
+                return;
+            }
+            int moved = Math.min(size, entries.length - 1) - position;
+            System.arraycopy(entries, position, entries, position + 1, moved);
+            System.arraycopy(ranks, position, ranks, position + 1, moved);
+            entries[position] = entry;
+            ranks[position] = rank;
+            size = Math.min(size + 1, entries.length);
+        }
+
+        List<Match> toList() {
+            List<Match> matches = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                matches.add(new Match(entries[i].userId(), entries[i].userName(), entries[i].email()));
+            }
+            return matches;
+        }
+
+        private static boolean before(Entry entry, int rank, Entry other, int otherRank) {
+            if (rank != otherRank) {
+                return rank < otherRank;
+            }
+            if (entry.userName().length() != other.userName().length()) {
+                return entry.userName().length() < other.userName().length();
+            }
+            return entry.userId() < other.userId();
+        }
+    }
+}
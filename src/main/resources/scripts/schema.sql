@@ -27,6 +27,7 @@ CREATE TABLE IF NOT EXISTS `app_user` (
   `password` VARCHAR(100) NOT NULL,
   `balance` DECIMAL(10,2) NOT NULL DEFAULT 0.00,
   `created_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `tx_count` INT NOT NULL DEFAULT 0,
   PRIMARY KEY (`id`))
 ENGINE = InnoDB;
 
@@ -60,9 +61,10 @@ CREATE TABLE IF NOT EXISTS `app_transaction` (
     ON UPDATE CASCADE)
 ENGINE = InnoDB;
 
-CREATE INDEX `fk_transaction_sender_idx` ON `app_transaction` (`user_id_sender` ASC) VISIBLE;
+-- Index composites utilisés par l'historique paginé par curseur (created_at, id) ; ils servent aussi aux clés étrangères
+CREATE INDEX `idx_transaction_sender_created` ON `app_transaction` (`user_id_sender` ASC, `created_at` ASC, `id` ASC) VISIBLE;
 
-CREATE INDEX `fk_transaction_receiver_idx` ON `app_transaction` (`user_id_receiver` ASC) VISIBLE;
+CREATE INDEX `idx_transaction_receiver_created` ON `app_transaction` (`user_id_receiver` ASC, `created_at` ASC, `id` ASC) VISIBLE;
 
 
 -- -----------------------------------------------------
@@ -74,6 +76,7 @@ CREATE TABLE IF NOT EXISTS `user_friendship` (
   `user_id` INT NOT NULL,
   `friend_id` INT NOT NULL,
   `created_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  `last_transfer_at` TIMESTAMP NULL DEFAULT NULL,
   PRIMARY KEY (`user_id`, `friend_id`),
   CONSTRAINT `fk_user_friendship_user`
     FOREIGN KEY (`user_id`)
@@ -91,6 +94,46 @@ CREATE INDEX `fk_user_friendship_friend_idx` ON `user_friendship` (`friend_id` A
 
 CREATE INDEX `fk_user_friendship_user_idx` ON `user_friendship` (`user_id` ASC) INVISIBLE;
 
+-- Contacts récents : amis d'un utilisateur du plus récemment payé au plus ancien (jamais payés en dernier)
+CREATE INDEX `user_friendship_recent_idx` ON `user_friendship` (`user_id` ASC, `last_transfer_at` DESC) VISIBLE;
+
+
+-- -----------------------------------------------------
+-- Table `transfer_idempotency`
+-- Clés d'idempotence des transferts déjà exécutés (une par expéditeur, type d'opération et clé).
+-- scope : TRANSFER (transfert simple) ou BATCH (paiement groupé).
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `transfer_idempotency` ;
+
+CREATE TABLE IF NOT EXISTS `transfer_idempotency` (
+  `user_id` INT NOT NULL,
+  `scope` VARCHAR(8) NOT NULL,
+  `idempotency_key` VARCHAR(64) NOT NULL,
+  `created_at` TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`user_id`, `scope`, `idempotency_key`),
+  CONSTRAINT `fk_transfer_idempotency_user`
+    FOREIGN KEY (`user_id`)
+    REFERENCES `app_user` (`id`)
+    ON DELETE CASCADE
+    ON UPDATE CASCADE)
+ENGINE = InnoDB;
+
+
+-- -----------------------------------------------------
+-- Table `id_generator`
+-- Compteurs d'identifiants (app_user, app_transaction) réservés par blocs par Hibernate.
+-- next_val = dernier identifiant réservé ; réaligné au démarrage sur MAX(id) de chaque table.
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `id_generator` ;
+
+CREATE TABLE IF NOT EXISTS `id_generator` (
+  `sequence_name` VARCHAR(255) NOT NULL,
+  `next_val` BIGINT NULL,
+  PRIMARY KEY (`sequence_name`))
+ENGINE = InnoDB;
+
+INSERT INTO `id_generator` (`sequence_name`, `next_val`) VALUES ('app_user', 0), ('app_transaction', 0);
+
 
 SET SQL_MODE=@OLD_SQL_MODE;
 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
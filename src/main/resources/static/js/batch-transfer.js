@@ -0,0 +1,32 @@
+/* ============================================================
+   PAIEMENT GROUPÉ : ajout d'une ligne de bénéficiaire
+   La dernière ligne est copiée, vidée, et ses champs renumérotés
+   (lines[0].relation -> lines[1].relation, ...) pour le binding Spring.
+   ============================================================ */
+document.addEventListener('DOMContentLoaded', function () {
+    var container = document.getElementById('batch-lines');
+    var addButton = document.getElementById('batch-add-line');
+    var maxLines = 50; // BatchTransferFormDTO.MAX_LINES
+    if (!container || !addButton) {
+        return;
+    }
+
+    addButton.addEventListener('click', function () {
+        var rows = container.querySelectorAll('.batch-line');
+        if (rows.length >= maxLines) {
+            return;
+        }
+        var index = rows.length;
+        var row = rows[rows.length - 1].cloneNode(true);
+
+        row.querySelectorAll('.field-error').forEach(function (error) {
+            error.remove();
+        });
+        row.querySelectorAll('input, select').forEach(function (field) {
+            field.name = field.name.replace(/lines\[\d+]/, 'lines[' + index + ']');
+            field.id = field.name.replace(/[\[\].]/g, '');
+            field.value = '';
+        });
+        container.appendChild(row);
+    });
+});
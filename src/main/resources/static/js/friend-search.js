@@ -0,0 +1,47 @@
+/* ============================================================
+   TRANSFERT : recherche d'une relation pendant la saisie
+   La page ne contient que les contacts récents ; à chaque saisie
+   (250 ms après la dernière frappe), la liste proposée est
+   remplacée par les amis dont le nom commence par le texte saisi
+   (GET /transfer/friends?q=...).
+   ============================================================ */
+document.addEventListener('DOMContentLoaded', function () {
+    var script = document.getElementById('friend-search');
+    var url = script ? script.getAttribute('data-url') : null;
+    var options = document.getElementById('friend-options');
+    var timer = null;
+    var sequence = 0;
+    if (!url || !options || !window.fetch) {
+        return;
+    }
+
+    // délégation : les lignes ajoutées au paiement groupé sont aussi concernées
+    document.addEventListener('input', function (event) {
+        var field = event.target;
+        if (!field.matches || !field.matches('input[list="friend-options"]')) {
+            return;
+        }
+        clearTimeout(timer);
+        timer = setTimeout(function () {
+            var current = ++sequence;
+            fetch(url + '?q=' + encodeURIComponent(field.value.trim()), {headers: {'Accept': 'application/json'}})
+                .then(function (response) {
+                    return response.ok ? response.json() : null;
+                })
+                .then(function (friends) {
+                    // une réponse plus ancienne que la dernière saisie est ignorée
+                    if (current !== sequence || !Array.isArray(friends)) {
+                        return;
+                    }
+                    options.replaceChildren.apply(options, friends.map(function (friend) {
+                        var option = document.createElement('option');
+                        option.value = friend.userName;
+                        return option;
+                    }));
+                })
+                .catch(function () {
+                    // la liste actuelle reste proposée
+                });
+        }, 250);
+    });
+});
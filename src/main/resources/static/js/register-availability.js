@@ -0,0 +1,55 @@
+/* ============================================================
+   INSCRIPTION : disponibilité du username et de l'email
+   Vérifiée pendant la saisie (GET /register/availability),
+   300 ms après la dernière frappe. Réponse indicative :
+   l'unicité reste vérifiée à la soumission du formulaire.
+   ============================================================ */
+document.addEventListener('DOMContentLoaded', function () {
+    var script = document.getElementById('register-availability');
+    var url = script ? script.getAttribute('data-url') : null;
+    if (!url || !window.fetch) {
+        return;
+    }
+
+    function watch(fieldId, parameter, responseKey, takenMessage) {
+        var input = document.getElementById(fieldId);
+        var message = document.getElementById(fieldId + '-availability');
+        var timer = null;
+        var sequence = 0;
+        if (!input || !message) {
+            return;
+        }
+
+        input.addEventListener('input', function () {
+            clearTimeout(timer);
+            message.textContent = '';
+            message.className = 'availability-message';
+            var value = input.value.trim();
+            if (value === '' || !input.checkValidity()) {
+                return;
+            }
+            timer = setTimeout(function () {
+                var current = ++sequence;
+                fetch(url + '?' + parameter + '=' + encodeURIComponent(value), {headers: {'Accept': 'application/json'}})
+                    .then(function (response) {
+                        return response.ok ? response.json() : null;
+                    })
+                    .then(function (availability) {
+                        // une réponse plus ancienne que la dernière saisie est ignorée
+                        if (current !== sequence || !availability || !(responseKey in availability)) {
+                            return;
+                        }
+                        var available = availability[responseKey];
+                        message.textContent = available ? 'Disponible' : takenMessage;
+                        message.className = 'availability-message ' + (available ? 'available' : 'taken');
+                    })
+                    .catch(function () {
+                        // indicatif : en cas d'erreur, la vérification se fera à la soumission
+                    });
+            }, 300);
+        });
+    }
+
+    watch('userName', 'username', 'usernameAvailable', "Nom d'utilisateur déjà utilisé !");
+    watch('email', 'email', 'emailAvailable', 'Email déjà utilisé !');
+});
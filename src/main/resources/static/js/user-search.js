@@ -0,0 +1,51 @@
+/* ============================================================
+   RELATION : recherche d'un utilisateur pendant la saisie
+   À chaque saisie (250 ms après la dernière frappe, à partir de
+   2 caractères), la liste proposée est remplacée par les
+   utilisateurs dont le nom ou l'email contient le texte saisi
+   (GET /relation/users?q=...). Choisir une proposition remplit
+   le champ avec l'email de l'utilisateur.
+   ============================================================ */
+document.addEventListener('DOMContentLoaded', function () {
+    var script = document.getElementById('user-search');
+    var url = script ? script.getAttribute('data-url') : null;
+    var field = document.getElementById('email');
+    var options = document.getElementById('user-options');
+    var timer = null;
+    var sequence = 0;
+    if (!url || !field || !options || !window.fetch) {
+        return;
+    }
+
+    field.addEventListener('input', function () {
+        var text = field.value.trim();
+        clearTimeout(timer);
+        if (text.length < 2) {
+            ++sequence; // une réponse encore attendue est ignorée
+            options.replaceChildren();
+            return;
+        }
+        timer = setTimeout(function () {
+            var current = ++sequence;
+            fetch(url + '?q=' + encodeURIComponent(text), {headers: {'Accept': 'application/json'}})
+                .then(function (response) {
+                    return response.ok ? response.json() : null;
+                })
+                .then(function (users) {
+                    // une réponse plus ancienne que la dernière saisie est ignorée
+                    if (current !== sequence || !Array.isArray(users)) {
+                        return;
+                    }
+                    options.replaceChildren.apply(options, users.map(function (user) {
+                        var option = document.createElement('option');
+                        option.value = user.email;
+                        option.label = user.userName;
+                        return option;
+                    }));
+                })
+                .catch(function () {
+                    // la liste actuelle reste proposée
+                });
+        }, 250);
+    });
+});
@@ -0,0 +1,96 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        encoder.destroy();
+    }
+
+    @Test
+    void encode_ShouldDelegateOnHashingThread() {
+        encoder = new BoundedPasswordEncoder(new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return Thread.currentThread().getName() + ":" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.endsWith(":" + rawPassword);
+            }
+        }, 1, 1, 1000, new SimpleMeterRegistry());
+
+        String encoded = encoder.encode("secret");
+
+        assertTrue(encoded.startsWith("password-hashing-"));
+        assertTrue(encoder.matches("secret", encoded));
+    }
+
+    @Test
+    void matches_ShouldRejectImmediately_WhenPoolAndQueueAreFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(blockingEncoder(), 1, 1, 5000, new SimpleMeterRegistry());
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        while (!queued.isDone() && queueIsEmpty()) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.matches("c", "hash"));
+
+        release.countDown();
+        assertEquals("a", running.get(1, TimeUnit.SECONDS));
+        assertEquals("b", queued.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void encode_ShouldGiveUp_WhenHashingTakesLongerThanTimeout() {
+        encoder = new BoundedPasswordEncoder(blockingEncoder(), 1, 1, 50, new SimpleMeterRegistry());
+
+        assertThrows(PasswordHashingBusyException.class, () -> encoder.encode("a"));
+    }
+
+    private boolean queueIsEmpty() {
+        return ((ThreadPoolExecutor) ReflectionTestUtils.getField(encoder, "executor")).getQueue().isEmpty();
+    }
+
+    private PasswordEncoder blockingEncoder() {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return false;
+            }
+        };
+    }
+}
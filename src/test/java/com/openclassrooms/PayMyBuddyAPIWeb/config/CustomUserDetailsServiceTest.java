@@ -0,0 +1,70 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class CustomUserDetailsServiceTest {
+
+    private static final String EMAIL = "user@example.com";
+
+    private AppUserRepository appUserRepository;
+    private CaffeineUserCache userCache;
+    private CustomUserDetailsService customUserDetailsService;
+
+    @BeforeEach
+    void setUp() {
+        appUserRepository = mock(AppUserRepository.class);
+        userCache = new CaffeineUserCache(new SimpleMeterRegistry(), 100, 60_000);
+        customUserDetailsService = new CustomUserDetailsService(appUserRepository, userCache);
+
+        AppUser user = new AppUser();
+        user.setUserId(42);
+        user.setEmail(EMAIL);
+        user.setPassword("$2a$10$hash");
+        when(appUserRepository.findByEmail(EMAIL)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void loadUserByUsername_ShouldReadDatabaseOnce_WhenUserIsCached() {
+        UserDetails first = customUserDetailsService.loadUserByUsername(EMAIL);
+        UserDetails second = customUserDetailsService.loadUserByUsername(EMAIL);
+
+        verify(appUserRepository, times(1)).findByEmail(EMAIL);
+        assertNotSame(first, second);
+        assertEquals(42, ((AppUserPrincipal) second).getUserId());
+    }
+
+    @Test
+    void loadUserByUsername_ShouldKeepCachedPassword_WhenReturnedCopyIsErased() {
+        AppUserPrincipal first = (AppUserPrincipal) customUserDetailsService.loadUserByUsername(EMAIL);
+        first.eraseCredentials(); // fait par Spring Security après l'authentification
+
+        assertEquals("$2a$10$hash", customUserDetailsService.loadUserByUsername(EMAIL).getPassword());
+    }
+
+    @Test
+    void loadUserByUsername_ShouldReadDatabaseAgain_WhenUserWasRemovedFromCache() {
+        customUserDetailsService.loadUserByUsername(EMAIL);
+        userCache.removeUserFromCache(EMAIL);
+        customUserDetailsService.loadUserByUsername(EMAIL);
+
+        verify(appUserRepository, times(2)).findByEmail(EMAIL);
+    }
+
+    @Test
+    void loadUserByUsername_ShouldThrow_WhenEmailIsUnknown() {
+        when(appUserRepository.findByEmail("inconnu@example.com")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> customUserDetailsService.loadUserByUsername("inconnu@example.com"));
+    }
+}
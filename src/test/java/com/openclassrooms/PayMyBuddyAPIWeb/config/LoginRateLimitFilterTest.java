@@ -0,0 +1,66 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class LoginRateLimitFilterTest {
+
+    @Test
+    void tryConsume_ShouldRefillOverTime_UpToCapacity() {
+        double onePerSecond = 1.0 / TimeUnit.SECONDS.toNanos(1);
+        LoginRateLimitFilter.TokenBucket bucket = new LoginRateLimitFilter.TokenBucket(2, onePerSecond, 0);
+
+        assertTrue(bucket.tryConsume(0));
+        assertTrue(bucket.tryConsume(0));
+        assertFalse(bucket.tryConsume(0));
+        assertTrue(bucket.tryConsume(TimeUnit.SECONDS.toNanos(1)));
+        assertFalse(bucket.tryConsume(TimeUnit.SECONDS.toNanos(1)));
+        // longue inactivité : la réserve ne dépasse pas la capacité
+        assertTrue(bucket.tryConsume(TimeUnit.HOURS.toNanos(1)));
+        assertTrue(bucket.tryConsume(TimeUnit.HOURS.toNanos(1)));
+        assertFalse(bucket.tryConsume(TimeUnit.HOURS.toNanos(1)));
+    }
+
+    @Test
+    void doFilter_ShouldRejectBeforeAuthentication_WhenEmailBucketIsEmpty() throws Exception {
+        LoginRateLimitFilter filter = new LoginRateLimitFilter(new SimpleMeterRegistry(), 100, 1, 2, 1, 100);
+        FilterChain chain = mock(FilterChain.class);
+
+        for (int i = 0; i < 2; i++) {
+            filter.doFilter(loginRequest("Bob@Example.com"), new MockHttpServletResponse(), chain);
+        }
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(loginRequest("bob@example.com"), rejected, chain);
+
+        verify(chain, times(2)).doFilter(any(), any());
+        assertEquals("/login", rejected.getRedirectedUrl());
+        // un autre compte depuis la même adresse reste admis
+        filter.doFilter(loginRequest("alice@example.com"), new MockHttpServletResponse(), chain);
+        verify(chain, times(3)).doFilter(any(), any());
+    }
+
+    @Test
+    void doFilter_ShouldIgnoreOtherRequests() throws Exception {
+        LoginRateLimitFilter filter = new LoginRateLimitFilter(new SimpleMeterRegistry(), 0, 0, 0, 0, 100);
+        FilterChain chain = mock(FilterChain.class);
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/login"), new MockHttpServletResponse(), chain);
+
+        verify(chain).doFilter(any(), any());
+    }
+
+    private static MockHttpServletRequest loginRequest(String email) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setServletPath("/login");
+        request.setParameter("username", email);
+        return request;
+    }
+}
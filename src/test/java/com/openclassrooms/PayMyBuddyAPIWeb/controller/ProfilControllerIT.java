@@ -79,6 +79,8 @@ public class ProfilControllerIT {
                 .orElseThrow(() -> new UserNotFoundException("Utilisateur introuvable"));
         assertEquals("NouveauUsername", updatedUser.getUserName());
         assertEquals("test@example.com", updatedUser.getEmail()); // email doit rester le même
+        assertEquals("TUP654123!?", updatedUser.getPassword()); // mot de passe ni re-haché ni modifié
+        assertEquals(0, BigDecimal.ZERO.compareTo(updatedUser.getBalance())); // solde non modifié
     }
 
     @Test
@@ -101,4 +101,17 @@ public class RegisterControllerIT {
                 .andExpect(model().attributeHasFieldErrors("registerDTO", "userName")); // erreur sur le champ userName
     }
 
+    @Test
+    public void checkAvailability_shouldReportTakenAndFreeValues() throws Exception {
+
+        appUserService.createUser(new RegisterDTO("takenUser", "taken@example.com", "Password123!"));
+
+        mockMvc.perform(get("/register/availability")
+                        .param("username", "TAKENUSER")
+                        .param("email", "libre@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.usernameAvailable").value(false))
+                .andExpect(jsonPath("$.emailAvailable").value(true));
+    }
+
 }
@@ -12,6 +12,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -19,6 +20,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -172,4 +174,50 @@ public class RelationControllerIT {
                 .andExpect(flash().attributeExists("org.springframework.validation.BindingResult.relationDto"));
     }
 
-}
\ No newline at end of file
+    // =======================
+    // Tests GET /relation/users
+    // =======================
+
+    @Test
+    @DisplayName("GET /relation/users → utilisateurs trouvés par partie de nom, sans l'utilisateur connecté")
+    void searchUsers_shouldReturnMatchingUsersAsJson() throws Exception {
+        mockMvc.perform(get("/relation/users").param("q", "user"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.email == 'friend@example.com')]").exists())
+                .andExpect(jsonPath("$[?(@.email == 'current@example.com')]").doesNotExist());
+    }
+
+    // =======================
+    // Tests POST /relation/import
+    // =======================
+
+    @Test
+    @DisplayName("POST /relation/import avec emails et fichier → résultat par email")
+    void importRelations_shouldRedirectWithResultPerEmail() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "contacts.csv", "text/csv",
+                "friend@example.com;inconnu@example.com".getBytes());
+
+        mockMvc.perform(multipart("/relation/import")
+                        .file(file)
+                        .param("emails", "current@example.com\npas-un-email")
+                        .with(csrf()))
+                .andDo(print())
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/relation"))
+                .andExpect(flash().attribute("importResults", org.hamcrest.Matchers.hasSize(4)));
+    }
+
+    @Test
+    @DisplayName("POST /relation/import sans email → message d'erreur")
+    void importRelations_withoutEmail_shouldRedirectWithErrorMessage() throws Exception {
+        mockMvc.perform(multipart("/relation/import")
+                        .param("emails", " ")
+                        .with(csrf()))
+                .andDo(print())
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/relation"))
+                .andExpect(flash().attributeExists("errorMessage"));
+    }
+
+}
@@ -5,7 +5,9 @@ import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
 import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
 import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.FriendIdView;
 import com.openclassrooms.PayMyBuddyAPIWeb.service.AppUserService;
+import com.openclassrooms.PayMyBuddyAPIWeb.service.TransactionCountRepairJob;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,13 +16,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
 import java.util.Comparator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -42,6 +47,9 @@ public class TransferControllerIT {
     @Autowired
     private AppTransactionRepository appTransactionRepository;
 
+    @Autowired
+    private TransactionCountRepairJob transactionCountRepairJob;
+
     @BeforeEach
     void setup() {
 
@@ -111,9 +119,9 @@ public class TransferControllerIT {
                 .andExpect(model().attributeExists("transferForm"))
                 .andExpect(model().attributeExists("friends"))
                 .andDo(mvcResult -> {
-                    List<AppUser> friendsFromModel = ((List<AppUser>) mvcResult.getModelAndView().getModel().get("friends"))
+                    List<FriendIdView> friendsFromModel = ((List<FriendIdView>) mvcResult.getModelAndView().getModel().get("friends"))
                             .stream()
-                            .sorted(Comparator.comparing(AppUser::getUserName))
+                            .sorted(Comparator.comparing(FriendIdView::getUserName))
                             .toList();
 
                     // vérifier que la liste contient les amis
@@ -139,6 +147,36 @@ public class TransferControllerIT {
                 });
     }
 
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void searchFriends_shouldReturnFriendsMatchingPrefix() throws Exception {
+        mockMvc.perform(get("/transfer/friends").param("q", "AMITEST2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].userName").value("amiTest2"));
+
+        mockMvc.perform(get("/transfer/friends").param("q", "ami%"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void searchFriends_shouldListMostRecentlyPaidFriendFirst_whenQueryIsEmpty() throws Exception {
+        mockMvc.perform(post("/transfer")
+                        .param("relation", "amiTest2")
+                        .param("description", "Cinéma")
+                        .param("montant", "8.00")
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        mockMvc.perform(get("/transfer/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].userName").value("amiTest2"))
+                .andExpect(jsonPath("$[1].userName").value("amiTest1"));
+    }
+
     @Test
     @WithMockUser(username = "currentuser@example.com")
     void handleTransfer_shouldReturnTransferView_whenValidationErrors() throws Exception {
@@ -199,4 +237,174 @@ public class TransferControllerIT {
                 .andExpect(model().attributeExists("transactions"));
     }
 
+    // Paiement groupé : tous les transferts sont appliqués ensemble
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void handleBatchTransfer_shouldRedirectWithSuccessMessage_whenAllLinesValid() throws Exception {
+        mockMvc.perform(post("/transfer/batch")
+                        .param("lines[0].relation", "amiTest1")
+                        .param("lines[0].description", "Restaurant")
+                        .param("lines[0].montant", "10.00")
+                        .param("lines[1].relation", "amiTest2")
+                        .param("lines[1].description", "Restaurant")
+                        .param("lines[1].montant", "12.50")
+                        .param("lines[2].relation", "amiTest1")
+                        .param("lines[2].description", "Taxi")
+                        .param("lines[2].montant", "5.00")
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/transfer"))
+                .andExpect(flash().attribute("successMessage", "Paiement groupé effectué avec succès (3 transferts)."));
+
+        assertEquals(0, appUserRepository.findByEmail("currentuser@example.com").orElseThrow().getBalance().compareTo(BigDecimal.valueOf(4972.50)));
+        assertEquals(0, appUserRepository.findByEmail("friend1@example.com").orElseThrow().getBalance().compareTo(BigDecimal.valueOf(15)));
+        assertEquals(0, appUserRepository.findByEmail("friend2@example.com").orElseThrow().getBalance().compareTo(BigDecimal.valueOf(12.50)));
+        assertEquals(5, appTransactionRepository.count());
+        // compteurs incrémentés par le paiement groupé (les transactions du setup sont insérées sans compteur)
+        assertEquals(3, appUserRepository.findByEmail("currentuser@example.com").orElseThrow().getTransactionCount());
+        assertEquals(2, appUserRepository.findByEmail("friend1@example.com").orElseThrow().getTransactionCount());
+    }
+
+    // Paiement groupé : tout ou rien si le solde ne couvre pas le total
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void handleBatchTransfer_shouldNotTransferAnything_whenTotalExceedsBalance() throws Exception {
+        mockMvc.perform(post("/transfer/batch")
+                        .param("lines[0].relation", "amiTest1")
+                        .param("lines[0].description", "Loyer")
+                        .param("lines[0].montant", "3000")
+                        .param("lines[1].relation", "amiTest2")
+                        .param("lines[1].description", "Loyer")
+                        .param("lines[1].montant", "3000")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(view().name("transfer"))
+                .andExpect(model().attribute("errorMessage", "Solde insuffisant."))
+                .andExpect(model().attributeExists("transferForm"))
+                .andExpect(model().attributeExists("friends"));
+
+        assertEquals(0, appUserRepository.findByEmail("currentuser@example.com").orElseThrow().getBalance().compareTo(BigDecimal.valueOf(5000)));
+        assertEquals(2, appTransactionRepository.count());
+    }
+
+    // Rejeu d'un même transfert (double clic, nouvel essai du proxy) : un seul débit
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void handleTransfer_shouldExecuteOnce_whenSameIdempotencyKeyIsReplayed() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/transfer")
+                            .header("Idempotency-Key", "cle-test-rejeu")
+                            .param("relation", "amiTest2")
+                            .param("description", "Test rejeu")
+                            .param("montant", "10.00")
+                            .with(csrf()))
+                    .andExpect(status().is3xxRedirection())
+                    .andExpect(flash().attribute("successMessage", "Transfert d'argent effectué avec succès."));
+        }
+
+        assertEquals(0, appUserRepository.findByEmail("currentuser@example.com").orElseThrow().getBalance().compareTo(BigDecimal.valueOf(4990)));
+        assertEquals(3, appTransactionRepository.count());
+    }
+
+    // Clé d'en-tête plus longue que la colonne : refusée avant tout transfert (elle serait tronquée)
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void handleTransfer_shouldReject_whenIdempotencyKeyHeaderIsTooLong() throws Exception {
+        mockMvc.perform(post("/transfer")
+                        .header("Idempotency-Key", "k".repeat(65))
+                        .param("relation", "amiTest2")
+                        .param("description", "Test clé longue")
+                        .param("montant", "10.00")
+                        .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(view().name("transfer"))
+                .andExpect(model().attribute("errorMessage", "La clé d'idempotence ne peut pas dépasser 64 caractères."));
+
+        assertEquals(0, appUserRepository.findByEmail("currentuser@example.com").orElseThrow().getBalance().compareTo(BigDecimal.valueOf(5000)));
+        assertEquals(2, appTransactionRepository.count());
+    }
+
+    // Une même clé sert une fois par type d'opération : le paiement groupé n'est pas pris pour un rejeu du transfert
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void handleBatchTransfer_shouldExecute_whenSameKeyWasUsedBySingleTransfer() throws Exception {
+        mockMvc.perform(post("/transfer")
+                        .header("Idempotency-Key", "cle-partagee")
+                        .param("relation", "amiTest2")
+                        .param("description", "Simple")
+                        .param("montant", "10.00")
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(post("/transfer/batch")
+                        .header("Idempotency-Key", "cle-partagee")
+                        .param("lines[0].relation", "amiTest1")
+                        .param("lines[0].description", "Groupé")
+                        .param("lines[0].montant", "5.00")
+                        .with(csrf()))
+                .andExpect(status().is3xxRedirection());
+
+        assertEquals(0, appUserRepository.findByEmail("currentuser@example.com").orElseThrow().getBalance().compareTo(BigDecimal.valueOf(4985)));
+        assertEquals(4, appTransactionRepository.count());
+    }
+
+    // Pagination par curseur : la page suivante reprend après la dernière transaction affichée
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void showTransferPage_shouldFollowCursorToNextPage() throws Exception {
+        // les transactions du setup sont insérées directement : recalcul des compteurs pour le nombre de pages
+        transactionCountRepairJob.repairAll();
+
+        String nextCursor = (String) mockMvc.perform(get("/transfer").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("totalPages", 2))
+                .andExpect(model().attribute("previousCursor", (Object) null))
+                .andReturn().getModelAndView().getModel().get("nextCursor");
+
+        mockMvc.perform(get("/transfer").param("size", "1").param("page", "1").param("cursor", nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("currentPage", 1))
+                .andExpect(model().attribute("nextCursor", (Object) null))
+                .andExpect(model().attributeExists("previousCursor"))
+                .andDo(mvcResult -> assertEquals(1,
+                        ((List<?>) mvcResult.getModelAndView().getModel().get("transactions")).size()));
+    }
+
+    // Paramètres de pagination hors bornes : taille et page ramenées dans les limites
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void showTransferPage_shouldClampPagingParameters() throws Exception {
+        mockMvc.perform(get("/transfer").param("size", "100000").param("page", "500").param("cursor", "invalide"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("size", TransferController.MAX_PAGE_SIZE))
+                .andExpect(model().attribute("currentPage", 0));
+    }
+
+    // Export de l'historique : fichier CSV écrit en flux (réponse asynchrone)
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void exportHistory_shouldStreamCsvAttachment() throws Exception {
+        MvcResult started = mockMvc.perform(get("/transfer/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"transactions.csv\""))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("date,relation,description,montant", lines[0]);
+        assertTrue(lines[1].endsWith(",amiTest1,Cadeau,20.00"));
+        assertTrue(lines[2].endsWith(",amiTest2,Repas,-15.00"));
+    }
+
+    // Format d'export inconnu : 400
+    @Test
+    @WithMockUser(username = "currentuser@example.com")
+    void exportHistory_shouldReturnBadRequest_whenFormatUnknown() throws Exception {
+        mockMvc.perform(get("/transfer/export").param("format", "xlsx"))
+                .andExpect(status().isBadRequest());
+    }
+
 }
@@ -0,0 +1,151 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Vérifie par EXPLAIN que les requêtes natives de l'historique lisent chaque côté (envoyé / reçu)
+ * dans l'ordre de son index composite, sans trier tout l'historique de l'utilisateur.
+ * <p>
+ * Le jeu de données est généré en SQL pour un utilisateur "lourd" ; sa taille se règle avec
+ * -Dexplain.rows=10000000 (valeur par défaut réduite pour garder le test rapide).
+ * Seule la table dérivée de fusion, limitée à 2 x maxRows lignes, peut être triée.
+ * Les requêtes ne font que des EXPLAIN et des lectures : le jeu de données est généré une seule fois pour la classe.
+ * Les plans obtenus sont journalisés au niveau DEBUG.
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles(profiles = "test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class AppTransactionHistoryExplainIT {
+
+    private static final String DESCRIPTION = "explain-dataset";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Value("${explain.rows:200000}")
+    private int rows;
+
+    private int heavyUserId;
+
+    @BeforeAll
+    void generateDataset() {
+        List<Integer> userIds = jdbcTemplate.queryForList("SELECT id FROM app_user ORDER BY id", Integer.class);
+        assertTrue(userIds.size() >= 3, "le jeu de données de test doit contenir au moins 3 utilisateurs");
+        heavyUserId = userIds.get(0);
+        int counterpartA = userIds.get(1);
+        int counterpartB = userIds.get(2);
+
+        // Identifiants au-delà de ceux déjà réservés par le générateur Hibernate, qui est ensuite réaligné
+        long firstId = jdbcTemplate.queryForObject(
+                "SELECT GREATEST((SELECT COALESCE(MAX(id), 0) FROM app_transaction), "
+                        + "(SELECT COALESCE(MAX(next_val), 0) FROM id_generator WHERE sequence_name = 'app_transaction')) + 1",
+                Long.class);
+
+        // Génération par lots de 100 000 lignes (CTE récursive) : une ligne sur deux envoyée, l'autre reçue
+        jdbcTemplate.execute("SET SESSION cte_max_recursion_depth = 1000000");
+        int chunk = 100_000;
+        for (int offset = 0; offset < rows; offset += chunk) {
+            int count = Math.min(chunk, rows - offset);
+            jdbcTemplate.update("INSERT INTO app_transaction (id, user_id_sender, user_id_receiver, description, amount, created_at) "
+                            + "WITH RECURSIVE seq (n) AS (SELECT 0 UNION ALL SELECT n + 1 FROM seq WHERE n + 1 < ?) "
+                            + "SELECT ? + n, "
+                            + "IF((? + n) % 2 = 0, ?, IF(n % 3 = 0, ?, ?)), "
+                            + "IF((? + n) % 2 = 0, IF(n % 3 = 0, ?, ?), ?), "
+                            + "?, 1.00, TIMESTAMP('2020-01-01') + INTERVAL (? + n) SECOND FROM seq",
+                    count, firstId + offset,
+                    offset, heavyUserId, counterpartA, counterpartB,
+                    offset, counterpartA, counterpartB, heavyUserId,
+                    DESCRIPTION, offset);
+        }
+        jdbcTemplate.update("UPDATE id_generator SET next_val = GREATEST(next_val, ?) WHERE sequence_name = 'app_transaction'",
+                firstId + rows);
+        jdbcTemplate.execute("ANALYZE TABLE app_transaction");
+    }
+
+    @AfterAll
+    void deleteDataset() {
+        jdbcTemplate.update("DELETE FROM app_transaction WHERE description = ?", DESCRIPTION);
+    }
+
+    @Test
+    void latestHistory_ShouldReadEachSideInIndexOrder() {
+        assertNoFilesortOnAppTransaction(AppTransactionRepository.LATEST_HISTORY_SQL, params(), 2);
+    }
+
+    @Test
+    void olderHistory_ShouldReadEachSideInIndexOrder() {
+        MapSqlParameterSource params = params()
+                .addValue("createdAt", Timestamp.valueOf(LocalDateTime.of(2020, 1, 2, 0, 0)))
+                .addValue("id", Integer.MAX_VALUE);
+        assertNoFilesortOnAppTransaction(AppTransactionRepository.OLDER_HISTORY_SQL, params, 2);
+    }
+
+    @Test
+    void newerHistory_ShouldReadEachSideInIndexOrder() {
+        MapSqlParameterSource params = params()
+                .addValue("createdAt", Timestamp.valueOf(LocalDateTime.of(2020, 1, 2, 0, 0)))
+                .addValue("id", 0);
+        assertNoFilesortOnAppTransaction(AppTransactionRepository.NEWER_HISTORY_SQL, params, 2);
+    }
+
+    @Test
+    void exportPages_ShouldReadOneSideInIndexOrder() {
+        MapSqlParameterSource params = params()
+                .addValue("createdAt", Timestamp.valueOf(LocalDateTime.of(2020, 1, 2, 0, 0)))
+                .addValue("id", 0);
+        assertNoFilesortOnAppTransaction(AppTransactionRepository.SENT_HISTORY_AFTER_SQL, params, 1);
+        assertNoFilesortOnAppTransaction(AppTransactionRepository.RECEIVED_HISTORY_AFTER_SQL, params, 1);
+    }
+
+    private MapSqlParameterSource params() {
+        return new MapSqlParameterSource().addValue("userId", heavyUserId).addValue("maxRows", 6);
+    }
+
+    private List<Map<String, Object>> explain(String sql, MapSqlParameterSource params) {
+        List<Map<String, Object>> plan = namedParameterJdbcTemplate.queryForList("EXPLAIN " + sql, params);
+        plan.forEach(row -> log.debug("EXPLAIN {}", row));
+        return plan;
+    }
+
+    /**
+     * Chaque lecture de app_transaction doit passer par un index composite de l'historique,
+     * sans "Using filesort" : le tri ne porte que sur la table dérivée de fusion (au plus 2 x maxRows lignes).
+     *
+     * @param sides nombre de lectures de app_transaction attendues (une par côté de l'historique)
+     */
+    private void assertNoFilesortOnAppTransaction(String sql, MapSqlParameterSource params, int sides) {
+        List<Map<String, Object>> plan = explain(sql, params);
+        List<Map<String, Object>> baseTableRows = plan.stream()
+                .filter(row -> "app_transaction".equals(row.get("table")))
+                .toList();
+        assertEquals(sides, baseTableRows.size(), "une lecture par côté attendue : " + plan);
+        for (Map<String, Object> row : baseTableRows) {
+            String key = String.valueOf(row.get("key"));
+            String extra = String.valueOf(row.get("Extra"));
+            assertTrue(key.startsWith("idx_transaction_"), "index composite attendu : " + row);
+            assertFalse(extra.contains("Using filesort"), "tri de l'historique complet : " + row);
+        }
+    }
+}
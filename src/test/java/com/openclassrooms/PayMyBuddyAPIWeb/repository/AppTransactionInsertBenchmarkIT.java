@@ -0,0 +1,97 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.repository;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mesure du débit d'insertion des transactions : une requête par ligne (comportement imposé
+ * auparavant par GenerationType.IDENTITY) contre les lots JDBC permis par le générateur par table.
+ * Le test ne vérifie que le nombre de lignes insérées ; les débits mesurés (lignes/s) sont journalisés
+ * au niveau INFO, sans valeur de référence. Le nombre de lignes est réglable avec -Dbenchmark.rows=...
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles(profiles = "test")
+public class AppTransactionInsertBenchmarkIT {
+
+    @Autowired
+    private AppUserRepository appUserRepository;
+
+    @Autowired
+    private AppTransactionRepository appTransactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${benchmark.rows:2000}")
+    private int rows;
+
+    private AppUser sender;
+    private AppUser receiver;
+
+    @BeforeEach
+    void setup() {
+        appTransactionRepository.deleteAll();
+        sender = appUserRepository.findByEmail("alice@example.com").orElseThrow();
+        receiver = appUserRepository.findByEmail("bob@example.com").orElseThrow();
+    }
+
+    @Test
+    void insertTransactions_ShouldMeasureThroughputWithAndWithoutJdbcBatches() {
+        // échauffement (JIT, pool de connexions, premier bloc d'identifiants)
+        insert(rows / 10, 1);
+
+        double unbatched = insert(rows, 1);
+        double batched = insert(rows, null);
+
+        log.info("Insertion de {} transactions : sans lot {} lignes/s, avec lots JDBC {} lignes/s",
+                rows, Math.round(unbatched), Math.round(batched));
+        assertEquals(rows / 10 + 2L * rows, appTransactionRepository.count());
+    }
+
+    /**
+     * Insère {@code count} transactions dans une seule transaction.
+     *
+     * @param count     nombre de lignes à insérer
+     * @param batchSize taille de lot JDBC imposée à la session, ou {@code null} pour la configuration
+     * @return débit mesuré, en lignes par seconde
+     */
+    private double insert(int count, Integer batchSize) {
+        List<AppTransaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AppTransaction tx = new AppTransaction();
+            tx.setSender(sender);
+            tx.setReceiver(receiver);
+            tx.setAmountTransaction(BigDecimal.ONE);
+            tx.setDescription("benchmark " + i);
+            tx.setTransactionCreatedAt(LocalDateTime.now());
+            transactions.add(tx);
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            appTransactionRepository.saveAll(transactions);
+        });
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+}
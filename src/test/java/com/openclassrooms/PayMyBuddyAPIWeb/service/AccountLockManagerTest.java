@@ -0,0 +1,67 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.AccountLockTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountLockManagerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AccountLockManager accountLockManager;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountLockManager = new AccountLockManager(16, 100, meterRegistry);
+    }
+
+    @Test
+    void lock_ShouldTakeSharedStripeOnce_WhenBothAccountsShareAStripe() {
+        // deux identifiants qui tombent sur le même verrou : il ne doit être pris qu'une fois
+        int first = 1;
+        int second = 2;
+        while (accountLockManager.stripeIndex(second) != accountLockManager.stripeIndex(first)) {
+            second++;
+        }
+
+        try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(first, second)) {
+            assertEquals(0, accountLockManager.contendedCount());
+        }
+        // après libération, le verrou est de nouveau disponible pour un autre thread
+        assertDoesNotThrow(() -> CompletableFuture.runAsync(() -> accountLockManager.lock(1).close()).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lock_ShouldTimeOutAndCountContention_WhenAccountIsHeldByAnotherThread() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> {
+            try (AccountLockManager.AccountLocks ignored = accountLockManager.lock(7)) {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(locked.await(1, TimeUnit.SECONDS));
+
+        assertThrows(AccountLockTimeoutException.class, () -> accountLockManager.lock(3, 7));
+
+        release.countDown();
+        holder.get(1, TimeUnit.SECONDS);
+        assertEquals(1, accountLockManager.contendedCount());
+        assertEquals(1, accountLockManager.timeoutCount());
+        assertEquals(1, accountLockManager.maxStripeContention());
+        assertEquals(1.0, meterRegistry.get("paymybuddy.account.locks.timeouts").functionCounter().count());
+
+        // le verrou du compte 3, pris avant l'échec, a bien été relâché
+        assertDoesNotThrow(() -> accountLockManager.lock(3).close());
+    }
+}
@@ -0,0 +1,161 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.BatchTransferFormDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.TransferFormDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.FriendshipJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.FriendIdView;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.TransferHistoryRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+public class AppTransactionServiceTest {
+
+    private AppUserRepository appUserRepository;
+    private AppTransactionRepository appTransactionRepository;
+    private TransferJdbcRepository transferJdbcRepository;
+    private AppTransactionService appTransactionService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        appUserRepository = mock(AppUserRepository.class);
+        appTransactionRepository = mock(AppTransactionRepository.class);
+        transferJdbcRepository = mock(TransferJdbcRepository.class);
+        AuthenticationService authenticationService = mock(AuthenticationService.class);
+        when(authenticationService.getAuthenticatedUserId()).thenReturn(5);
+        // pas de base : la transaction exécute directement son contenu
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(transactionTemplate.getTransactionManager()).thenReturn(mock(PlatformTransactionManager.class));
+
+        appTransactionService = new AppTransactionService();
+        ReflectionTestUtils.setField(appTransactionService, "authenticationService", authenticationService);
+        ReflectionTestUtils.setField(appTransactionService, "appUserRepository", appUserRepository);
+        ReflectionTestUtils.setField(appTransactionService, "appTransactionRepository", appTransactionRepository);
+        ReflectionTestUtils.setField(appTransactionService, "transferJdbcRepository", transferJdbcRepository);
+        ReflectionTestUtils.setField(appTransactionService, "friendshipJdbcRepository", mock(FriendshipJdbcRepository.class));
+        ReflectionTestUtils.setField(appTransactionService, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(appTransactionService, "accountLockManager", mock(AccountLockManager.class));
+        ReflectionTestUtils.setField(appTransactionService, "transferPipeline", mock(TransferPipeline.class));
+        ReflectionTestUtils.setField(appTransactionService, "transferIdempotencyCache", mock(TransferIdempotencyCache.class));
+        ReflectionTestUtils.setField(appTransactionService, "recentHistoryCache", mock(RecentHistoryCache.class));
+        ReflectionTestUtils.setField(appTransactionService, "lockRetryPolicy", new LockRetryPolicy(1, 0));
+        ReflectionTestUtils.setField(appTransactionService, "exportPageSize", 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processBatchTransfer_ShouldLockAllAccountsInAscendingIdOrder_BeforeDebitingSender() {
+        when(appUserRepository.findFriendIdsByUserNames(eq(5), any()))
+                .thenReturn(List.of(friend(9, "Zed"), friend(2, "Ann")));
+        when(appUserRepository.findAllByIdsForUpdate(any())).thenAnswer(invocation ->
+                ((Collection<Integer>) invocation.getArgument(0)).stream().map(id -> null).toList());
+        when(transferJdbcRepository.debit(5, new BigDecimal("30.00"), 2)).thenReturn(1);
+        when(transferJdbcRepository.creditAll(any())).thenReturn(2);
+
+        assertEquals(2, appTransactionService.processBatchTransfer(batch(line("Zed", "10.00"), line("Ann", "20.00"))));
+
+        ArgumentCaptor<Collection<Integer>> locked = ArgumentCaptor.forClass(Collection.class);
+        InOrder inOrder = inOrder(appUserRepository, transferJdbcRepository);
+        inOrder.verify(appUserRepository).findAllByIdsForUpdate(locked.capture());
+        inOrder.verify(transferJdbcRepository).debit(5, new BigDecimal("30.00"), 2);
+        inOrder.verify(transferJdbcRepository).creditAll(any());
+        // un bénéficiaire d'identifiant inférieur est verrouillé avant l'expéditeur
+        assertEquals(List.of(2, 5, 9), List.copyOf(locked.getValue()));
+    }
+
+    @Test
+    void processTransfer_ShouldDebitAndCreditInOneStatement_AndRejectWhenBalanceIsInsufficient() {
+        when(appUserRepository.findFriendIdByUserName(5, "Zed")).thenReturn(Optional.of(9));
+        when(appUserRepository.findAllByIdsForUpdate(List.of(5, 9))).thenReturn(List.of(new AppUser(), new AppUser()));
+        when(transferJdbcRepository.debitAndCredit(5, 9, new BigDecimal("10.00"))).thenReturn(false);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> appTransactionService.processTransfer(line("Zed", "10.00")));
+
+        assertEquals("Solde insuffisant.", error.getMessage());
+        verify(transferJdbcRepository).debitAndCredit(5, 9, new BigDecimal("10.00"));
+        verify(transferJdbcRepository, never()).applyBalanceDeltas(any());
+    }
+
+    @Test
+    void exportHistory_ShouldMergeSentAndReceivedPagesInChronologicalOrder() throws Exception {
+        LocalDateTime t = LocalDateTime.of(2024, 5, 1, 12, 0);
+        // pages de 2 lignes : une page incomplète termine la lecture de son côté
+        when(appTransactionRepository.findSentHistoryAfter(eq(5), any(), anyInt(), eq(2)))
+                .thenReturn(List.of(row(1, t, "r1", "-1.00"), row(4, t.plusMinutes(3), "r4", "-4.00")))
+                .thenReturn(List.of(row(6, t.plusMinutes(5), "r6", "-6.00")));
+        when(appTransactionRepository.findReceivedHistoryAfter(eq(5), any(), anyInt(), eq(2)))
+                .thenReturn(List.of(row(2, t.plusMinutes(1), "r2", "2.00"), row(3, t.plusMinutes(2), "r3", "3.00")))
+                .thenReturn(List.of(row(5, t.plusMinutes(3), "r5", "5.00")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        appTransactionService.exportHistoryForCurrentUser(HistoryExportFormat.CSV).writeTo(out);
+
+        List<String> relations = out.toString(StandardCharsets.UTF_8).lines().skip(1)
+                .map(line -> line.split(",")[1]).toList();
+        assertEquals(List.of("r1", "r2", "r3", "r4", "r5", "r6"), relations); // à date égale : identifiant croissant
+        verify(appTransactionRepository).findSentHistoryAfter(5, t.plusMinutes(3), 4, 2);
+        verify(appTransactionRepository).findReceivedHistoryAfter(5, t.plusMinutes(2), 3, 2);
+        verify(appTransactionRepository, times(2)).findSentHistoryAfter(eq(5), any(), anyInt(), eq(2));
+        verify(appTransactionRepository, times(2)).findReceivedHistoryAfter(eq(5), any(), anyInt(), eq(2));
+    }
+
+    private static BatchTransferFormDTO batch(TransferFormDTO... lines) {
+        BatchTransferFormDTO dto = new BatchTransferFormDTO();
+        dto.setLines(List.of(lines));
+        return dto;
+    }
+
+    private static TransferFormDTO line(String relation, String amount) {
+        TransferFormDTO line = new TransferFormDTO();
+        line.setRelation(relation);
+        line.setDescription("Test");
+        line.setMontant(new BigDecimal(amount));
+        return line;
+    }
+
+    private static FriendIdView friend(int userId, String userName) {
+        return new FriendIdView() {
+            @Override
+            public Integer getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getUserName() {
+                return userName;
+            }
+        };
+    }
+
+    private static TransferHistoryRow row(int id, LocalDateTime createdAt, String relation, String montant) {
+        return new RecentHistoryCache.CachedRow(id, createdAt, relation, "Test", new BigDecimal(montant));
+    }
+}
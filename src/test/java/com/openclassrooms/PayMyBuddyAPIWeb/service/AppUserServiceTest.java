@@ -0,0 +1,250 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.AppUserDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.RelationImportResultDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.RelationImportResultDTO.Outcome;
+import com.openclassrooms.PayMyBuddyAPIWeb.dto.RegisterDTO;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.EmailAlreadyUsedException;
+import com.openclassrooms.PayMyBuddyAPIWeb.exception.UsernameAlreadyUsedException;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.FriendshipJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.UserEmailView;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+public class AppUserServiceTest {
+
+    private AppUserRepository appUserRepository;
+    private PasswordEncoder passwordEncoder;
+    private UserCache userCache;
+    private AuthenticationService authenticationService;
+    private FriendshipJdbcRepository friendshipJdbcRepository;
+    private UserDirectoryIndex userDirectoryIndex;
+    private AppUserService appUserService;
+    private AppUser user;
+
+    @BeforeEach
+    void setUp() {
+        appUserRepository = mock(AppUserRepository.class);
+        passwordEncoder = mock(PasswordEncoder.class);
+        userCache = mock(UserCache.class);
+        authenticationService = mock(AuthenticationService.class);
+        friendshipJdbcRepository = mock(FriendshipJdbcRepository.class);
+        userDirectoryIndex = mock(UserDirectoryIndex.class);
+        appUserService = new AppUserService();
+        ReflectionTestUtils.setField(appUserService, "appUserRepository", appUserRepository);
+        ReflectionTestUtils.setField(appUserService, "passwordEncoder", passwordEncoder);
+        ReflectionTestUtils.setField(appUserService, "userCache", userCache);
+        ReflectionTestUtils.setField(appUserService, "userAvailabilityIndex", mock(UserAvailabilityIndex.class));
+        ReflectionTestUtils.setField(appUserService, "authenticationService", authenticationService);
+        ReflectionTestUtils.setField(appUserService, "friendshipJdbcRepository", friendshipJdbcRepository);
+        ReflectionTestUtils.setField(appUserService, "friendGraph", mock(FriendGraph.class));
+        ReflectionTestUtils.setField(appUserService, "userDirectoryIndex", userDirectoryIndex);
+
+        user = new AppUser();
+        user.setUserId(1);
+        user.setUserName("Alice");
+        user.setEmail("alice@example.com");
+        user.setPassword("$2a$10$hash");
+        user.setBalance(new BigDecimal("500.00"));
+        when(appUserRepository.findById(1)).thenReturn(Optional.of(user));
+    }
+
+    @Test
+    void updateUser_ShouldNotHashNorTouchBalance_WhenOnlyUsernameChanges() {
+        when(appUserRepository.findByUserName("Alicia")).thenReturn(Optional.empty());
+
+        appUserService.updateUser(1, dto("Alicia", null));
+
+        verifyNoInteractions(passwordEncoder);
+        assertEquals("Alicia", user.getUserName());
+        assertEquals("$2a$10$hash", user.getPassword());
+        assertEquals(new BigDecimal("500.00"), user.getBalance());
+        verify(appUserRepository).save(user);
+        verify(userDirectoryIndex).recordAfterCommit(1, "Alicia", "alice@example.com");
+    }
+
+    @Test
+    void updateUser_ShouldHashNewPassword_WhenPasswordIsSupplied() {
+        when(passwordEncoder.encode("NouveauMotDePasse1!")).thenReturn("$2a$10$nouveau");
+
+        appUserService.updateUser(1, dto("Alice", "NouveauMotDePasse1!"));
+
+        assertEquals("$2a$10$nouveau", user.getPassword());
+        verify(userCache).removeUserFromCache("alice@example.com");
+    }
+
+    @Test
+    void updateUser_ShouldEvictUserCacheOnlyAfterCommit_WhenTransactionIsActive() {
+        when(passwordEncoder.encode("NouveauMotDePasse1!")).thenReturn("$2a$10$nouveau");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            appUserService.updateUser(1, dto("Alice", "NouveauMotDePasse1!"));
+
+            // avant le commit, une connexion doit encore pouvoir relire l'ancienne ligne sans la remettre en cache
+            verifyNoInteractions(userCache);
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(userCache).removeUserFromCache("alice@example.com");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void updateUser_ShouldWriteNothing_WhenNothingChanges() {
+        appUserService.updateUser(1, dto("Alice", ""));
+
+        verify(appUserRepository, never()).save(any());
+        verifyNoInteractions(passwordEncoder, userCache);
+    }
+
+    @Test
+    void createUser_ShouldInsertWithoutExistenceQueries() {
+        when(passwordEncoder.encode("MotDePasse123!")).thenReturn("$2a$10$hash");
+
+        appUserService.createUser(register("bob@example.com", "Bob"));
+
+        verify(appUserRepository).saveAndFlush(any(AppUser.class));
+        verify(userDirectoryIndex).recordAfterCommit(anyInt(), eq("Bob"), eq("bob@example.com"));
+        verify(appUserRepository, never()).findByEmail(anyString());
+        verify(appUserRepository, never()).findByUserName(anyString());
+    }
+
+    @Test
+    void createUser_ShouldThrowBusinessException_WhenUniqueConstraintIsViolated() {
+        when(appUserRepository.saveAndFlush(any(AppUser.class)))
+                .thenThrow(duplicate("Duplicate entry 'alice@example.com' for key 'app_user.email_UNIQUE'"))
+                .thenThrow(duplicate("Duplicate entry 'Alice' for key 'app_user.username_UNIQUE'"))
+                .thenThrow(duplicate("Cannot add or update a child row"));
+
+        assertThrows(EmailAlreadyUsedException.class, () -> appUserService.createUser(register("alice@example.com", "Bob")));
+        assertThrows(UsernameAlreadyUsedException.class, () -> appUserService.createUser(register("bob@example.com", "Alice")));
+        assertThrows(DataIntegrityViolationException.class, () -> appUserService.createUser(register("bob@example.com", "Bob")));
+    }
+
+    @Test
+    void addFriendByEmail_ShouldInsertRelationWithoutLoadingFriends() {
+        when(authenticationService.getAuthenticatedUserId()).thenReturn(1);
+        when(appUserRepository.findUserIdByEmail("bob@example.com")).thenReturn(Optional.of(2));
+        when(friendshipJdbcRepository.addFriend(1, 2)).thenReturn(true);
+
+        appUserService.addFriendByEmail("bob@example.com");
+
+        verify(friendshipJdbcRepository).addFriend(1, 2);
+        verify(appUserRepository, never()).findByEmailWithFriends(anyString());
+        verify(appUserRepository, never()).save(any());
+    }
+
+    @Test
+    void addFriendByEmail_ShouldThrow_WhenRelationExistsOrTargetsSelf() {
+        when(authenticationService.getAuthenticatedUserId()).thenReturn(1);
+        when(appUserRepository.findUserIdByEmail("bob@example.com")).thenReturn(Optional.of(2));
+        when(appUserRepository.findUserIdByEmail("alice@example.com")).thenReturn(Optional.of(1));
+        when(friendshipJdbcRepository.addFriend(1, 2)).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> appUserService.addFriendByEmail("bob@example.com"));
+        assertThrows(IllegalArgumentException.class, () -> appUserService.addFriendByEmail("alice@example.com"));
+        verify(friendshipJdbcRepository, never()).addFriend(1, 1);
+    }
+
+    @Test
+    void searchFriendsForCurrentUser_ShouldEscapeLikeWildcards_AndBoundResults() {
+        when(authenticationService.getAuthenticatedUserId()).thenReturn(1);
+
+        appUserService.searchFriendsForCurrentUser(" bo_b%! ", 20);
+
+        verify(appUserRepository).findFriendsByUserNamePrefix(1, "bo!_b!%!!%", Limit.of(20));
+    }
+
+    @Test
+    void searchFriendsForCurrentUser_ShouldReturnRecentContacts_WhenPrefixIsBlank() {
+        when(authenticationService.getAuthenticatedUserId()).thenReturn(1);
+
+        appUserService.searchFriendsForCurrentUser(null, 20);
+        appUserService.searchFriendsForCurrentUser("  ", 20);
+
+        verify(appUserRepository, times(2)).findRecentFriends(1, 20);
+        verify(appUserRepository, never()).findFriendsByUserNamePrefix(anyInt(), anyString(), any());
+    }
+
+    @Test
+    void importFriendsByEmail_ShouldLookUpOnceAndInsertOnlyNewFriends_WithOutcomePerEmail() {
+        when(authenticationService.getAuthenticatedUserId()).thenReturn(1);
+        when(appUserRepository.findUserIdsByEmails(List.of("bob@example.com", "Eva@Example.com", "alice@example.com",
+                "inconnu@example.com", "carl@example.com")))
+                .thenReturn(List.of(emailView(2, "bob@example.com"), emailView(3, "eva@example.com"),
+                        emailView(1, "alice@example.com"), emailView(4, "carl@example.com")));
+        when(friendshipJdbcRepository.findFriendIds(eq(1), argThat(ids -> Set.copyOf(ids).equals(Set.of(2, 3, 4)))))
+                .thenReturn(List.of(3));
+
+        List<RelationImportResultDTO> results = appUserService.importFriendsByEmail(
+                "bob@example.com, Eva@Example.com\nBOB@example.com;alice@example.com pas-un-email\n"
+                        + "inconnu@example.com carl@example.com");
+
+        assertEquals(List.of(Outcome.ADDED, Outcome.ALREADY_FRIEND, Outcome.SELF, Outcome.INVALID,
+                Outcome.NOT_FOUND, Outcome.ADDED), results.stream().map(RelationImportResultDTO::getOutcome).toList());
+        assertEquals("Eva@Example.com", results.get(1).getEmail());
+        verify(friendshipJdbcRepository).addFriends(1, Set.of(2, 4));
+    }
+
+    @Test
+    void importFriendsByEmail_ShouldThrow_WhenNoEmailIsGiven() {
+        assertThrows(IllegalArgumentException.class, () -> appUserService.importFriendsByEmail(" ,; \n"));
+
+        verifyNoInteractions(friendshipJdbcRepository);
+    }
+
+    private static DataIntegrityViolationException duplicate(String message) {
+        return new DataIntegrityViolationException("could not execute statement", new SQLException(message));
+    }
+
+    private static RegisterDTO register(String email, String userName) {
+        RegisterDTO dto = new RegisterDTO();
+        dto.setEmail(email);
+        dto.setUserName(userName);
+        dto.setPassword("MotDePasse123!");
+        return dto;
+    }
+
+    private static AppUserDTO dto(String userName, String password) {
+        AppUserDTO dto = new AppUserDTO();
+        dto.setUserId(1);
+        dto.setUserName(userName);
+        dto.setEmail("alice@example.com");
+        dto.setPassword(password);
+        dto.setBalance(BigDecimal.ZERO); // ignoré
+        return dto;
+    }
+
+    private static UserEmailView emailView(int userId, String email) {
+        return new UserEmailView() {
+            @Override
+            public Integer getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getEmail() {
+                return email;
+            }
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.config.AppUserPrincipal;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+public class AuthenticationServiceTest {
+
+    private AppUserRepository appUserRepository;
+    private AuthenticationService authenticationService;
+
+    @BeforeEach
+    void setUp() {
+        appUserRepository = mock(AppUserRepository.class);
+        authenticationService = new AuthenticationService();
+        ReflectionTestUtils.setField(authenticationService, "appUserRepository", appUserRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void getAuthenticatedUserId_ShouldReadPrincipal_WithoutDatabaseLookup() {
+        authenticate(new AppUserPrincipal(42, "user@example.com", "hash", AuthorityUtils.createAuthorityList("ROLE_USER")));
+
+        assertEquals(42, authenticationService.getAuthenticatedUserId());
+
+        verifyNoInteractions(appUserRepository);
+    }
+
+    @Test
+    void getAuthenticatedUserId_ShouldLookUpEmailOncePerRequest_WhenPrincipalHasNoId() {
+        authenticate(User.withUsername("user@example.com").password("hash").roles("USER").build());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(appUserRepository.findUserIdByEmail("user@example.com")).thenReturn(Optional.of(7));
+
+        assertEquals(7, authenticationService.getAuthenticatedUserId());
+        assertEquals(7, authenticationService.getAuthenticatedUserId());
+
+        verify(appUserRepository, times(1)).findUserIdByEmail("user@example.com");
+    }
+
+    @Test
+    void getAuthenticatedUserEntity_ShouldLoadByIdOncePerRequest_WhenPrincipalCarriesId() {
+        authenticate(new AppUserPrincipal(42, "user@example.com", "hash", AuthorityUtils.createAuthorityList("ROLE_USER")));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        AppUser user = new AppUser();
+        when(appUserRepository.findById(42)).thenReturn(Optional.of(user));
+
+        assertSame(user, authenticationService.getAuthenticatedUserEntity());
+        assertSame(user, authenticationService.getAuthenticatedUserEntity());
+
+        verify(appUserRepository, times(1)).findById(42);
+        verify(appUserRepository, never()).findByEmail(anyString());
+    }
+
+    private static void authenticate(Object principal) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, AuthorityUtils.createAuthorityList("ROLE_USER")));
+    }
+}
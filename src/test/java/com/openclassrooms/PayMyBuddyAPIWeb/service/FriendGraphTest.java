@@ -0,0 +1,69 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class FriendGraphTest {
+
+    private static FriendGraph graph(int compactionThreshold, int[]... friendships) {
+        // graphe vide : rebuild() n'est pas appelé hors du contexte Spring
+        FriendGraph graph = new FriendGraph(mock(JdbcTemplate.class), new SimpleMeterRegistry(), compactionThreshold);
+        for (int[] friendship : friendships) {
+            graph.recordAfterCommit(friendship[0], friendship[1]); // pas de transaction : ajout immédiat
+        }
+        return graph;
+    }
+
+    @Test
+    void suggest_ShouldRankFriendsOfFriendsByMutualFriends_AndExcludeCurrentFriends() {
+        // 1 -> 2, 3 ; 2 -> 4, 5, 1 ; 3 -> 4, 2
+        FriendGraph graph = graph(1000, new int[]{1, 2}, new int[]{1, 3}, new int[]{2, 4}, new int[]{2, 5},
+                new int[]{2, 1}, new int[]{3, 4}, new int[]{3, 2});
+
+        assertEquals(List.of(new FriendGraph.Suggestion(4, 2), new FriendGraph.Suggestion(5, 1)), graph.suggest(1, 10));
+        assertEquals(List.of(new FriendGraph.Suggestion(4, 2)), graph.suggest(1, 1));
+        assertTrue(graph.isSuggestion(1, 5));
+        assertFalse(graph.isSuggestion(1, 2));
+        assertFalse(graph.isSuggestion(1, 1));
+        assertEquals(List.of(), graph.suggest(99, 10));
+    }
+
+    @Test
+    void suggest_ShouldGiveSameResult_AfterCompaction() {
+        FriendGraph graph = graph(2, new int[]{1, 2}, new int[]{2, 3}, new int[]{2, 4}, new int[]{1, 5},
+                new int[]{5, 4}, new int[]{2, 3});
+
+        assertEquals(5, graph.edgeCount()); // doublon ignoré
+        assertEquals(List.of(new FriendGraph.Suggestion(4, 2), new FriendGraph.Suggestion(3, 1)), graph.suggest(1, 10));
+
+        graph.recordAfterCommit(1, 4);
+        assertEquals(List.of(new FriendGraph.Suggestion(3, 1)), graph.suggest(1, 10));
+    }
+
+    @Test
+    void suggest_ShouldCountEveryCandidate_WhenFriendsOfFriendsAreNumerous() {
+        // 1 -> 2, 3 ; 2 -> 1024, 2048, ..., 512 * 1024 ; 3 -> les 10 derniers de la liste de 2 (mêmes bits de poids faible)
+        FriendGraph graph = graph(100_000, new int[]{1, 2}, new int[]{1, 3});
+        for (int i = 1; i <= 512; i++) {
+            graph.recordAfterCommit(2, i * 1024);
+        }
+        for (int i = 503; i <= 512; i++) {
+            graph.recordAfterCommit(3, i * 1024);
+        }
+        graph.recordAfterCommit(2, 3); // ami commun déjà ami : exclu
+
+        List<FriendGraph.Suggestion> suggestions = graph.suggest(1, 600);
+
+        assertEquals(512, suggestions.size());
+        assertEquals(new FriendGraph.Suggestion(503 * 1024, 2), suggestions.get(0));
+        assertEquals(new FriendGraph.Suggestion(512 * 1024, 2), suggestions.get(9));
+        assertEquals(new FriendGraph.Suggestion(1024, 1), suggestions.get(10));
+        assertEquals(new FriendGraph.Suggestion(502 * 1024, 1), suggestions.get(511));
+    }
+}
@@ -0,0 +1,35 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryCursorTest {
+
+    @Test
+    void decode_ShouldReturnSameCursor_WhenTokenWasEncoded() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2025, 3, 14, 15, 9, 26), 42, true);
+
+        String token = cursor.encode();
+
+        // jeton opaque, utilisable tel quel dans une URL
+        assertFalse(token.contains("|"));
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+        assertEquals(cursor, HistoryCursor.decode(token));
+    }
+
+    @Test
+    void decode_ShouldKeepDirection_WhenCursorPointsToNewerTransactions() {
+        HistoryCursor cursor = new HistoryCursor(LocalDateTime.of(2025, 1, 1, 0, 0), 7, false);
+
+        assertFalse(HistoryCursor.decode(cursor.encode()).older());
+    }
+
+    @Test
+    void decode_ShouldThrowIllegalArgumentException_WhenTokenIsTampered() {
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> HistoryCursor.decode("eHx5fHo"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HistoryExportFormatTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 6, 1, 12, 30, 15);
+
+    @Test
+    void writeRow_ShouldQuoteAndEscapeCsvFields_WhenTextContainsSeparators() throws IOException {
+        StringWriter out = new StringWriter();
+
+        HistoryExportFormat.CSV.writeRow(out, DATE, "Alice", "Resto, \"chez Léo\"", new BigDecimal("-12.50"));
+
+        assertEquals("2025-06-01T12:30:15,Alice,\"Resto, \"\"chez Léo\"\"\",-12.50\n", out.toString());
+    }
+
+    @Test
+    void writeRow_ShouldNeutralizeFormula_WhenCsvTextStartsWithFormulaCharacter() throws IOException {
+        StringWriter out = new StringWriter();
+
+        HistoryExportFormat.CSV.writeRow(out, DATE, "Bob", "=HYPERLINK(\"x\")", BigDecimal.TEN);
+
+        assertTrue(out.toString().contains(",\"'=HYPERLINK(\"\"x\"\")\","));
+    }
+
+    @Test
+    void writeRow_ShouldWriteOneJsonObjectPerLine_WhenFormatIsJsonLines() throws IOException {
+        StringWriter out = new StringWriter();
+
+        HistoryExportFormat.JSONL.writeRow(out, DATE, "Alice", "ligne 1\nligne \"2\"", new BigDecimal("20.00"));
+
+        assertEquals("{\"date\":\"2025-06-01T12:30:15\",\"relation\":\"Alice\","
+                + "\"description\":\"ligne 1\\nligne \\\"2\\\"\",\"montant\":20.00}\n", out.toString());
+    }
+
+    @Test
+    void fromParameter_ShouldIgnoreCase_AndRejectUnknownFormat() {
+        assertEquals(HistoryExportFormat.JSONL, HistoryExportFormat.fromParameter("JSONL"));
+        assertEquals(HistoryExportFormat.CSV, HistoryExportFormat.fromParameter("csv"));
+        assertThrows(IllegalArgumentException.class, () -> HistoryExportFormat.fromParameter("xlsx"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppTransaction;
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.projection.TransferHistoryRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class RecentHistoryCacheTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    private AppTransactionRepository appTransactionRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private RecentHistoryCache recentHistoryCache;
+
+    @BeforeEach
+    void setUp() {
+        appTransactionRepository = mock(AppTransactionRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        recentHistoryCache = new RecentHistoryCache(appTransactionRepository, meterRegistry, 100, 3, 60_000);
+    }
+
+    @Test
+    void findLatest_ShouldLoadOnceAndCountHits_WhenPageFitsInCache() {
+        when(appTransactionRepository.findLatestHistory(1, 3)).thenReturn(List.of(
+                row(12, NOW, "Bob", "-10.00"), row(11, NOW.minusMinutes(1), "Eva", "5.00")));
+
+        assertEquals(2, recentHistoryCache.findLatest(1, 2).size());
+        assertEquals(11, recentHistoryCache.findLatest(1, 3).get(1).getId());
+
+        verify(appTransactionRepository, times(1)).findLatestHistory(1, 3);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void findLatest_ShouldReadDatabase_WhenPageIsLargerThanCache() {
+        recentHistoryCache.findLatest(1, 4);
+
+        verify(appTransactionRepository).findLatestHistory(1, 4);
+        verify(appTransactionRepository, never()).findLatestHistory(1, 3);
+    }
+
+    @Test
+    void recordAfterCommit_ShouldInsertRowForBothUsersAndKeepCapacity_WhenEntriesAreCached() {
+        when(appTransactionRepository.findLatestHistory(1, 3)).thenReturn(List.of(
+                row(12, NOW, "Eva", "-10.00"), row(11, NOW.minusMinutes(1), "Eva", "5.00"),
+                row(10, NOW.minusMinutes(2), "Eva", "7.00")));
+        when(appTransactionRepository.findLatestHistory(2, 3)).thenReturn(List.of());
+        recentHistoryCache.findLatest(1, 3);
+        recentHistoryCache.findLatest(2, 3);
+
+        // pas de transaction active : le cache est mis à jour immédiatement
+        recentHistoryCache.recordAfterCommit(List.of(transaction(13, user(1, "Alice"), user(2, "Bob"), "25.00")));
+
+        List<TransferHistoryRow> sender = recentHistoryCache.findLatest(1, 3);
+        assertEquals(List.of(13, 12, 11), sender.stream().map(TransferHistoryRow::getId).toList());
+        assertEquals("Bob", sender.get(0).getRelation());
+        assertEquals(new BigDecimal("-25.00"), sender.get(0).getMontant());
+
+        List<TransferHistoryRow> receiver = recentHistoryCache.findLatest(2, 3);
+        assertEquals(1, receiver.size());
+        assertEquals("Alice", receiver.get(0).getRelation());
+        assertEquals(new BigDecimal("25.00"), receiver.get(0).getMontant());
+        verify(appTransactionRepository, times(1)).findLatestHistory(1, 3);
+    }
+
+    @Test
+    void recordAfterCommit_ShouldNotDuplicateRow_WhenAlreadyLoadedFromDatabase() {
+        when(appTransactionRepository.findLatestHistory(1, 3)).thenReturn(List.of(row(13, NOW, "Bob", "-25.00")));
+        recentHistoryCache.findLatest(1, 3);
+
+        recentHistoryCache.recordAfterCommit(List.of(transaction(13, user(1, "Alice"), user(2, "Bob"), "25.00")));
+
+        assertEquals(1, recentHistoryCache.findLatest(1, 3).size());
+    }
+
+    private static AppUser user(int id, String name) {
+        AppUser user = new AppUser();
+        user.setUserId(id);
+        user.setUserName(name);
+        return user;
+    }
+
+    private static AppTransaction transaction(int id, AppUser sender, AppUser receiver, String amount) {
+        AppTransaction tx = new AppTransaction();
+        tx.setTransactionId(id);
+        tx.setSender(sender);
+        tx.setReceiver(receiver);
+        tx.setDescription("Test");
+        tx.setAmountTransaction(new BigDecimal(amount));
+        tx.setTransactionCreatedAt(NOW.plusMinutes(1));
+        return tx;
+    }
+
+    private static TransferHistoryRow row(int id, LocalDateTime createdAt, String relation, String montant) {
+        return new RecentHistoryCache.CachedRow(id, createdAt, relation, "Test", new BigDecimal(montant));
+    }
+}
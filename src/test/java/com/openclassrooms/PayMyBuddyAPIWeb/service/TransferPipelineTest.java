@@ -0,0 +1,221 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.entity.AppUser;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppTransactionRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.FriendshipJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository.AccountChange;
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.TransferJdbcRepository.IdempotencyScope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TransferPipelineTest {
+
+    private AppUserRepository appUserRepository;
+    private AppTransactionRepository appTransactionRepository;
+    private TransferJdbcRepository transferJdbcRepository;
+    private TransactionTemplate transactionTemplate;
+
+    /** Soldes des comptes connus de la base simulée */
+    private final Map<Integer, BigDecimal> balances = new HashMap<>();
+
+    /** Clés d'idempotence déjà réservées (INSERT IGNORE simulé) */
+    private final Set<String> claimedKeys = new HashSet<>();
+
+    private TransferPipeline pipeline;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        appUserRepository = mock(AppUserRepository.class);
+        appTransactionRepository = mock(AppTransactionRepository.class);
+        transferJdbcRepository = mock(TransferJdbcRepository.class);
+        when(appUserRepository.findAllByIdsForUpdate(any())).thenAnswer(invocation ->
+                ((Collection<Integer>) invocation.getArgument(0)).stream()
+                        .filter(balances::containsKey)
+                        .map(id -> user(id, balances.get(id)))
+                        .toList());
+        when(transferJdbcRepository.claimIdempotencyKey(anyInt(), eq(IdempotencyScope.TRANSFER), anyString()))
+                .thenAnswer(invocation -> claimedKeys.add(invocation.getArgument(0) + ":" + invocation.getArgument(2)));
+        when(transferJdbcRepository.applyBalanceDeltas(any())).thenAnswer(invocation -> {
+            int[] updated = new int[invocation.<Map<Integer, AccountChange>>getArgument(0).size()];
+            Arrays.fill(updated, 1);
+            return updated;
+        });
+        // pas de base : la transaction exécute directement son contenu
+        transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void batch_ShouldCheckBalancesInArrivalOrder_AndRejectOnlyTransfersExceedingTheRunningBalance() throws Exception {
+        balances.put(1, new BigDecimal("50.00"));
+        balances.put(2, new BigDecimal("10.00"));
+        balances.put(3, BigDecimal.ZERO);
+        startPipeline(4);
+
+        CompletableFuture<Void> first = pipeline.submit(1, 2, new BigDecimal("30.00"), "a", null);
+        CompletableFuture<Void> second = pipeline.submit(1, 3, new BigDecimal("30.00"), "b", null); // reste 20
+        CompletableFuture<Void> third = pipeline.submit(2, 3, new BigDecimal("40.00"), "c", null); // 10 + 30 reçus
+        CompletableFuture<Void> fourth = pipeline.submit(1, 3, new BigDecimal("20.00"), "d", null); // reste 20
+
+        assertNull(first.get(5, TimeUnit.SECONDS));
+        assertEquals("Solde insuffisant.", rejection(second).getMessage());
+        assertNull(third.get(5, TimeUnit.SECONDS));
+        assertNull(fourth.get(5, TimeUnit.SECONDS));
+
+        // un seul lot : une variation nette par compte
+        Map<Integer, AccountChange> changes = appliedChanges();
+        assertEquals(new AccountChange(new BigDecimal("-50.00"), 2), changes.get(1));
+        assertEquals(new AccountChange(new BigDecimal("-10.00"), 2), changes.get(2));
+        assertEquals(new AccountChange(new BigDecimal("60.00"), 2), changes.get(3));
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(appTransactionRepository).saveAll(argThat(transactions -> ((Collection<?>) transactions).size() == 3));
+    }
+
+    @Test
+    void batch_ShouldConfirmDuplicateIdempotencyKeyWithoutApplyingItTwice() throws Exception {
+        balances.put(1, new BigDecimal("100.00"));
+        balances.put(2, BigDecimal.ZERO);
+        startPipeline(3);
+
+        CompletableFuture<Void> first = pipeline.submit(1, 2, new BigDecimal("40.00"), "a", "cle-1");
+        CompletableFuture<Void> replay = pipeline.submit(1, 2, new BigDecimal("40.00"), "a", "cle-1");
+        CompletableFuture<Void> other = pipeline.submit(1, 2, new BigDecimal("5.00"), "b", "cle-2");
+
+        assertNull(first.get(5, TimeUnit.SECONDS));
+        assertNull(replay.get(5, TimeUnit.SECONDS)); // rejeu confirmé sans être appliqué
+        assertNull(other.get(5, TimeUnit.SECONDS));
+
+        Map<Integer, AccountChange> changes = appliedChanges();
+        assertEquals(new AccountChange(new BigDecimal("-45.00"), 2), changes.get(1));
+        assertEquals(new AccountChange(new BigDecimal("45.00"), 2), changes.get(2));
+        verify(appTransactionRepository).saveAll(argThat(transactions -> ((Collection<?>) transactions).size() == 2));
+    }
+
+    @Test
+    void batch_ShouldRejectUnknownAccount_WithoutFailingOtherTransfersOfTheBatch() throws Exception {
+        balances.put(1, new BigDecimal("100.00"));
+        balances.put(2, BigDecimal.ZERO);
+        startPipeline(3);
+
+        CompletableFuture<Void> before = pipeline.submit(1, 2, new BigDecimal("10.00"), "a", "cle-1");
+        CompletableFuture<Void> unknown = pipeline.submit(1, 99, new BigDecimal("10.00"), "b", "cle-2");
+        CompletableFuture<Void> after = pipeline.submit(2, 1, new BigDecimal("5.00"), "c", null);
+
+        assertNull(before.get(5, TimeUnit.SECONDS));
+        assertEquals("Relation introuvable", rejection(unknown).getMessage());
+        assertNull(after.get(5, TimeUnit.SECONDS));
+
+        Map<Integer, AccountChange> changes = appliedChanges();
+        assertEquals(Set.of(1, 2), changes.keySet());
+        assertEquals(new AccountChange(new BigDecimal("-5.00"), 2), changes.get(1));
+        // la clé d'un transfert refusé n'est pas réservée : il peut être retenté
+        assertEquals(Set.of("1:cle-1"), claimedKeys);
+    }
+
+    @Test
+    void batch_ShouldBeReplayedWithBackoff_WhenLocksCannotBeObtained() throws Exception {
+        balances.put(1, new BigDecimal("100.00"));
+        balances.put(2, BigDecimal.ZERO);
+        doThrow(new PessimisticLockingFailureException("Lock wait timeout exceeded"))
+                .doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        startPipeline(1);
+
+        assertNull(pipeline.submit(1, 2, new BigDecimal("10.00"), "a", null).get(5, TimeUnit.SECONDS));
+
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void stop_ShouldFinishBatchInProgress_AndFailTransfersStillQueued() throws Exception {
+        balances.put(1, new BigDecimal("100.00"));
+        balances.put(2, BigDecimal.ZERO);
+        CountDownLatch locking = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            locking.countDown();
+            try {
+                release.await(); // le lot en cours attend ses verrous
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of(user(1, balances.get(1)), user(2, balances.get(2)));
+        }).when(appUserRepository).findAllByIdsForUpdate(any());
+        startPipeline(1);
+
+        CompletableFuture<Void> inProgress = pipeline.submit(1, 2, new BigDecimal("10.00"), "a", null);
+        assertTrue(locking.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> queued = pipeline.submit(1, 2, new BigDecimal("20.00"), "b", null);
+
+        pipeline.stop();
+        pipeline = null;
+
+        assertNull(inProgress.get(5, TimeUnit.SECONDS));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals("Application en cours d'arrêt.", error.getCause().getMessage());
+        verify(transferJdbcRepository, times(1)).applyBalanceDeltas(any());
+    }
+
+    /**
+     * Démarre un pipeline dont chaque lot est appliqué dès qu'il contient {@code batchSize} transferts.
+     */
+    private void startPipeline(int batchSize) {
+        pipeline = new TransferPipeline(appUserRepository, appTransactionRepository, transferJdbcRepository,
+                mock(FriendshipJdbcRepository.class), transactionTemplate, mock(RecentHistoryCache.class),
+                new LockRetryPolicy(3, 1), new SimpleMeterRegistry(), true, 100, batchSize, 10_000);
+        pipeline.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Integer, AccountChange> appliedChanges() {
+        ArgumentCaptor<Map<Integer, AccountChange>> changes = ArgumentCaptor.forClass(Map.class);
+        verify(transferJdbcRepository).applyBalanceDeltas(changes.capture());
+        return changes.getValue();
+    }
+
+    private static RuntimeException rejection(CompletableFuture<Void> result) {
+        ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        return assertInstanceOf(IllegalArgumentException.class, error.getCause());
+    }
+
+    private static AppUser user(int id, BigDecimal balance) {
+        AppUser user = new AppUser();
+        user.setUserId(id);
+        user.setBalance(balance);
+        return user;
+    }
+}
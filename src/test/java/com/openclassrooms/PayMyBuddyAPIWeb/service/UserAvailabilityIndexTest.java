@@ -0,0 +1,66 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import com.openclassrooms.PayMyBuddyAPIWeb.repository.AppUserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class UserAvailabilityIndexTest {
+
+    private AppUserRepository appUserRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private UserAvailabilityIndex userAvailabilityIndex;
+
+    @BeforeEach
+    void setUp() {
+        appUserRepository = mock(AppUserRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        // filtres vides : rebuild() n'est pas appelé hors du contexte Spring
+        userAvailabilityIndex = new UserAvailabilityIndex(appUserRepository, mock(JdbcTemplate.class), meterRegistry, 1000, 0.01);
+    }
+
+    @Test
+    void isUserNameAvailable_ShouldAnswerWithoutDatabase_WhenNameWasNeverRegistered() {
+        assertTrue(userAvailabilityIndex.isUserNameAvailable("Alice"));
+        assertTrue(userAvailabilityIndex.isEmailAvailable("alice@example.com"));
+
+        verifyNoInteractions(appUserRepository);
+        assertEquals(2.0, meterRegistry.get("paymybuddy.register.availability.checks").tag("source", "memory").counter().count());
+    }
+
+    @Test
+    void isEmailAvailable_ShouldCheckDatabase_WhenEmailMightBeTaken() {
+        userAvailabilityIndex.register("Alice", "alice@example.com");
+        when(appUserRepository.existsByEmail("Alice@Example.com")).thenReturn(true);
+        when(appUserRepository.existsByUserName("Alicé")).thenReturn(false);
+
+        // casse, accents et espaces ignorés comme par la collation MySQL
+        assertFalse(userAvailabilityIndex.isEmailAvailable(" Alice@Example.com "));
+        assertTrue(userAvailabilityIndex.isUserNameAvailable("Alicé"));
+
+        verify(appUserRepository).existsByEmail("Alice@Example.com");
+        verify(appUserRepository).existsByUserName("Alicé");
+        assertEquals(2.0, meterRegistry.get("paymybuddy.register.availability.checks").tag("source", "database").counter().count());
+    }
+
+    @Test
+    void bloomFilter_ShouldKeepFalsePositiveRateNearTarget_WhenFilledToExpectedSize() {
+        UserAvailabilityIndex.BloomFilter filter = new UserAvailabilityIndex.BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+            if (filter.mightContain("autre" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "faux positifs : " + falsePositives);
+    }
+}
@@ -0,0 +1,84 @@
+package com.openclassrooms.PayMyBuddyAPIWeb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class UserDirectoryIndexTest {
+
+    private UserDirectoryIndex index;
+
+    @BeforeEach
+    void setUp() {
+        // annuaire vide : rebuild() n'est pas appelé hors du contexte Spring
+        index = new UserDirectoryIndex(mock(JdbcTemplate.class), new SimpleMeterRegistry(), 1000);
+        // pas de transaction : ajout immédiat
+        index.recordAfterCommit(1, "Alice", "alice@example.com");
+        index.recordAfterCommit(2, "Bob", "bob.martin@example.com");
+        index.recordAfterCommit(3, "Martine", "m.durand@example.com");
+        index.recordAfterCommit(4, "Émilie", "emilie@exemple.fr");
+        index.recordAfterCommit(5, "Maxime", "max@example.com");
+    }
+
+    @Test
+    void search_ShouldRankNamePrefixThenEmailPrefixThenSubstring_IgnoringCaseAndAccents() {
+        assertEquals(List.of(5, 3), ids(index.search("MA", 0, 10))); // 2 caractères : début du nom ou de l'email
+        assertEquals(List.of(3, 2), ids(index.search("mart", 0, 10)));
+        assertEquals(List.of(4), ids(index.search("emil", 0, 10)));
+        assertEquals(List.of(2, 1, 5, 3), ids(index.search("example.com", 0, 10))); // à rang égal : nom le plus court
+        assertEquals(List.of(2, 1), ids(index.search("example.com", 5, 2)));
+        assertEquals(List.of(), ids(index.search("m", 0, 10)));
+        assertEquals(List.of(), ids(index.search("xyz", 0, 10)));
+    }
+
+    @Test
+    void recordAfterCommit_ShouldReplacePreviousValues_WhenUserIsUpdated() {
+        index.recordAfterCommit(2, "Robert", "robert@example.com");
+
+        assertEquals(List.of(), ids(index.search("bob", 0, 10)));
+        assertEquals(List.of(new UserDirectoryIndex.Match(2, "Robert", "robert@example.com")),
+                index.search("rob", 0, 10));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void rebuild_ShouldStreamAppUserRowsInIdOrder_AndReplaceCurrentIndex() throws SQLException {
+        ResultSet rows = mock(ResultSet.class);
+        when(rows.next()).thenReturn(true, true, false);
+        when(rows.getInt(1)).thenReturn(7, 9);
+        when(rows.getString(2)).thenReturn("Zoé", "Yann");
+        when(rows.getString(3)).thenReturn("zoe@example.com", "yann@example.com");
+        Statement statement = mock(Statement.class);
+        when(statement.executeQuery(UserDirectoryIndex.ALL_USERS_SQL)).thenReturn(rows);
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        UserDirectoryIndex loaded = new UserDirectoryIndex(new JdbcTemplate(dataSource), new SimpleMeterRegistry(), 1000);
+        loaded.recordAfterCommit(1, "Ancien", "ancien@example.com"); // remplacé : absent de app_user
+
+        loaded.rebuild();
+
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+        assertEquals("SELECT id, username, email FROM app_user ORDER BY id", UserDirectoryIndex.ALL_USERS_SQL);
+        assertEquals(List.of(new UserDirectoryIndex.Match(7, "Zoé", "zoe@example.com")), loaded.search("zoe", 0, 10));
+        assertEquals(List.of(9), ids(loaded.search("yan", 0, 10)));
+        assertEquals(List.of(), ids(loaded.search("ancien", 0, 10)));
+        assertEquals(2, loaded.size());
+    }
+
+    private static List<Integer> ids(List<UserDirectoryIndex.Match> matches) {
+        return matches.stream().map(UserDirectoryIndex.Match::userId).toList();
+    }
+}
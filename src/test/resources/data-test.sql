@@ -1,6 +1,7 @@
 -- (Optionnel) reset propre avant réinsertion
 SET FOREIGN_KEY_CHECKS=0;
 TRUNCATE TABLE app_transaction;
+TRUNCATE TABLE transfer_idempotency;
 TRUNCATE TABLE user_friendship;
 TRUNCATE TABLE app_user;
 SET FOREIGN_KEY_CHECKS=1;
@@ -62,4 +63,11 @@ INSERT INTO user_friendship (user_id, friend_id) VALUES
 (6, 9),
 (7, 10),
 (8, 1);
-COMMIT;
\ No newline at end of file
+COMMIT;
+
+-- -----------------------------------------------------
+-- Compteurs de transactions (tenus à jour par les transferts de l'application)
+-- -----------------------------------------------------
+UPDATE app_user u SET tx_count =
+    (SELECT COUNT(*) FROM app_transaction t WHERE t.user_id_sender = u.id)
+  + (SELECT COUNT(*) FROM app_transaction t WHERE t.user_id_receiver = u.id);
\ No newline at end of file